@@ -0,0 +1,96 @@
+package Benchmarks;
+
+import Evaluator.BatchEvaluator;
+import Evaluator.FlatEvaluator;
+import Evaluator.KernelCompiler;
+import Evaluator.CompileError;
+import Lexer.CharScanner;
+import Parser.Expression;
+import Parser.ExpressionStream;
+import Parser.ParseError;
+
+import java.io.IOException;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.function.DoubleUnaryOperator;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Evaluates one function at SAMPLES points, as the samplers do
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class EvaluatorBenchmark
+{
+    private static final int SAMPLES = 1024;
+
+    @Param ({ "10", "100", "1000" })
+    public int terms;
+
+    private final Map<String, Expression> definitions = new HashMap<> ();
+    private Expression expression;
+    private FlatEvaluator flat;
+    private DoubleUnaryOperator kernel;
+    private BatchEvaluator batch;
+    private double xs[];
+    private double results[];
+
+    @Setup
+    public void setup ()
+	throws ParseError, CompileError, IOException
+    {
+	expression = new ExpressionStream (new CharScanner (Expressions.generate (terms, 42))).read ();
+	flat = FlatEvaluator.compile (expression, definitions);
+	kernel = KernelCompiler.compile (expression, definitions);
+	batch = new BatchEvaluator (flat);
+
+	xs = new double[SAMPLES];
+	results = new double[SAMPLES];
+	for (int i = 0; i < SAMPLES; ++i)
+	    xs[i] = -10 + 20.0 * i / (SAMPLES - 1);
+    }
+
+    @Benchmark
+    public double[] flat ()
+    {
+	for (int i = 0; i < SAMPLES; ++i)
+	    results[i] = flat.applyAsDouble (xs[i]);
+	return results;
+    }
+
+    @Benchmark
+    public double[] compiled ()
+    {
+	for (int i = 0; i < SAMPLES; ++i)
+	    results[i] = kernel.applyAsDouble (xs[i]);
+	return results;
+    }
+
+    @Benchmark
+    public double[] batch ()
+    {
+	batch.evaluate (xs, results);
+	return results;
+    }
+
+    @Benchmark
+    public DoubleUnaryOperator compile ()
+	throws CompileError
+    {
+	return KernelCompiler.compile (expression, definitions);
+    }
+}
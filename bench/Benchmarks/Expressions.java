@@ -0,0 +1,34 @@
+package Benchmarks;
+
+import java.util.Random;
+
+// Reproducible random functions of x for the benchmarks: sums and products
+// of powers, builtin calls and constants, the way users write them
+final class Expressions
+{
+    private static final String TERMS[] = {
+	"x", "sin(x)", "cos(2*x)", "x^2", "exp(x/4)", "log(x^2+1)", "(x+1)/(x-7)", "atan(x)"
+    };
+    private static final String OPERATORS[] = { "+", "-", "*", "/" };
+
+    private Expressions ()
+    {
+    }
+
+    static String generate (final int terms, final long seed)
+    {
+	final Random random = new Random (seed);
+	final StringBuilder function = new StringBuilder ();
+	function.append (TERMS[random.nextInt (TERMS.length)]);
+	for (int i = 1; i < terms; ++i)
+	    {
+		function.append (OPERATORS[random.nextInt (OPERATORS.length)]);
+		if (random.nextInt (4) == 0)
+		    function.append (random.nextInt (100)).append ('.').append (random.nextInt (100));
+		else
+		    function.append (TERMS[random.nextInt (TERMS.length)]);
+	    }
+
+	return function.append (';').toString ();
+    }
+}
@@ -0,0 +1,75 @@
+package Benchmarks;
+
+import Lexer.CharScanner;
+import Lexer.Token;
+import Lexer.TokenStream;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (2)
+public class LexerBenchmark
+{
+    @Param ({ "10", "100", "1000" })
+    public int terms;
+
+    private String function;
+    private byte bytes[];
+
+    @Setup
+    public void setup ()
+    {
+	function = Expressions.generate (terms, 42);
+	bytes = function.getBytes ();
+    }
+
+    @Benchmark
+    public void tokenStream (final Blackhole sink)
+	throws IOException
+    {
+	final TokenStream in = new TokenStream (new ByteArrayInputStream (bytes));
+	Token token;
+	do
+	    sink.consume (token = in.read ());
+	while (!token.getToken ().isEmpty ());
+    }
+
+    @Benchmark
+    public void charScannerTokens (final Blackhole sink)
+    {
+	final CharScanner in = new CharScanner (function);
+	Token token;
+	do
+	    sink.consume (token = in.read ());
+	while (!token.getToken ().isEmpty ());
+    }
+
+    @Benchmark
+    public int charScanner ()
+    {
+	final CharScanner in = new CharScanner (function);
+	int end = 0;
+	while (in.next () != Token.Type.TERMINATOR || in.getStart () < function.length ())
+	    end += in.getEnd ();
+	return end;
+    }
+}
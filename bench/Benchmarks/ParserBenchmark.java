@@ -0,0 +1,59 @@
+package Benchmarks;
+
+import Lexer.CharScanner;
+import Lexer.TokenStream;
+import Parser.Expression;
+import Parser.ExpressionStream;
+import Parser.ParseError;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (2)
+public class ParserBenchmark
+{
+    @Param ({ "10", "100", "1000" })
+    public int terms;
+
+    private String function;
+    private byte bytes[];
+
+    @Setup
+    public void setup ()
+    {
+	function = Expressions.generate (terms, 42);
+	bytes = function.getBytes ();
+    }
+
+    @Benchmark
+    public Expression tokenStream ()
+	throws ParseError, IOException
+    {
+	return new ExpressionStream (new TokenStream (new ByteArrayInputStream (bytes))).read ();
+    }
+
+    @Benchmark
+    public Expression charScanner ()
+	throws ParseError, IOException
+    {
+	return new ExpressionStream (new CharScanner (function)).read ();
+    }
+}
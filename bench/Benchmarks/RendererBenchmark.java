@@ -0,0 +1,105 @@
+package Benchmarks;
+
+import FunctionRotator.PlotSpec;
+import FunctionRotator.Renderer;
+import GNUPlot.Batch;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+// Everything plot () and rotate () do before the batch reaches gnuplot:
+// validation, compilation, sampling and command and data generation. The
+// cold variants use a new Renderer each time, so nothing comes from its
+// caches.
+@State (Scope.Benchmark)
+@BenchmarkMode (Mode.AverageTime)
+@OutputTimeUnit (TimeUnit.MICROSECONDS)
+@Warmup (iterations = 5, time = 1)
+@Measurement (iterations = 5, time = 1)
+@Fork (value = 2, jvmArgsAppend = "--add-modules=jdk.incubator.vector")
+public class RendererBenchmark
+{
+    @Param ({ "10", "100" })
+    public int terms;
+
+    @Param ({ "1", "4" })
+    public int functions;
+
+    private final Renderer renderer = new Renderer ();
+    private final Batch batch = new Batch ();
+    private PlotSpec plot;
+    private PlotSpec rotate;
+
+    @Setup
+    public void setup ()
+    {
+	final Map<String, String> definitions = new HashMap<> ();
+	final Map<String, String> axes = new HashMap<> ();
+	for (int i = 0; i < functions; ++i)
+	    {
+		definitions.put ("Y" + i, Expressions.generate (terms, i).replace (";", ""));
+		axes.put ("Y" + i, "0");
+	    }
+
+	plot = spec (PlotSpec.Mode.PLOT, definitions, axes);
+	rotate = spec (PlotSpec.Mode.ROTATE, definitions, axes);
+    }
+
+    private static PlotSpec spec (final PlotSpec.Mode mode,
+				  final Map<String, String> definitions,
+				  final Map<String, String> axes)
+    {
+	return new PlotSpec ("bench", mode, "lines",
+			     "1", "10", "-10", "10", "-10", "10",
+			     definitions, axes);
+    }
+
+    @Benchmark
+    public Batch plot ()
+	throws Exception
+    {
+	batch.clear ();
+	renderer.render (plot, batch);
+	return batch;
+    }
+
+    @Benchmark
+    public Batch rotate ()
+	throws Exception
+    {
+	batch.clear ();
+	renderer.render (rotate, batch);
+	return batch;
+    }
+
+    @Benchmark
+    public Batch plotCold ()
+	throws Exception
+    {
+	batch.clear ();
+	new Renderer ().render (plot, batch);
+	return batch;
+    }
+
+    @Benchmark
+    public Batch rotateCold ()
+	throws Exception
+    {
+	batch.clear ();
+	new Renderer ().render (rotate, batch);
+	return batch;
+    }
+}
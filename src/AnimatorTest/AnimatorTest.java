@@ -0,0 +1,101 @@
+package AnimatorTest;
+import FunctionRotator.Animation;
+import FunctionRotator.Animator;
+import FunctionRotator.PlotSpec;
+import FunctionRotator.Renderer;
+import GNUPlot.GNUPlot;
+import java.io.IOException;
+import java.nio.file.Paths;
+import java.util.Map;
+
+// Plays animations against gnuplot and checks that they keep running at
+// about the target frame rate, dropping frames only when gnuplot falls
+// behind, that every frame sent is acknowledged, and that an animation
+// stopped while still sampling sends nothing afterwards. Without arguments
+// it runs against EchoGnuplot, once answering at once and once slower
+// than the frame rate; with arguments they are the gnuplot command.
+public class AnimatorTest
+{
+    private static final double FRAMES_PER_SECOND = 25;
+    private static final double PERIOD = 2;
+    private static final long RUN_MILLISECONDS = 2000;
+    private static final long SLOW_MILLISECONDS = 100;
+
+    public static void main (final String args[])
+	throws IOException, InterruptedException
+    {
+	boolean passed;
+	if (args.length > 0)
+	    passed = run (String.join (" ", args), false, args);
+	else
+	    {
+		final String java = Paths.get (System.getProperty ("java.home"), "bin", "java").toString ();
+		final String classPath = System.getProperty ("java.class.path");
+		passed = run ("echo", false, java, "-cp", classPath, "AnimatorTest.EchoGnuplot", "0");
+		passed &= run ("slow echo", true, java, "-cp", classPath, "AnimatorTest.EchoGnuplot",
+			       Long.toString (SLOW_MILLISECONDS));
+	    }
+
+	System.exit (passed ? 0 : 1);
+    }
+
+    private static boolean run (final String name, final boolean slow, final String... command)
+	throws IOException, InterruptedException
+    {
+	final GNUPlot gnuplot = new GNUPlot ("gnuplot", command);
+	gnuplot.send ("set terminal unknown");
+	final Animator animator =
+	    new Animator (new Renderer (), gnuplot, message -> System.out.println ("  error: " + message));
+	final PlotSpec spec =
+	    new PlotSpec ("test", PlotSpec.Mode.ROTATE, "lines", "-1", "1", "", "", "", "",
+			  Map.of ("Y0", "x^2+1", "Y1", "sin(3*x)"), Map.of ("Y0", "0", "Y1", "1"));
+
+	// The first tick samples the solids, which takes far longer than this
+	final long committed = gnuplot.getLatency ().getCount ();
+	animator.start (spec, Animation.Sweep.VIEW, FRAMES_PER_SECOND, PERIOD);
+	Thread.sleep (5);
+	animator.stop ();
+	Thread.sleep (500 + 4 * SLOW_MILLISECONDS);
+	boolean passed = check ("stopped", animator.getShownFrames () == 0
+				&& gnuplot.getLatency ().getCount () == committed);
+
+	for (final Animation.Sweep sweep: Animation.Sweep.values ())
+	    {
+		animator.start (spec, sweep, FRAMES_PER_SECOND, PERIOD);
+		Thread.sleep (RUN_MILLISECONDS);
+		animator.stop ();
+		// Let the last frames be acknowledged
+		Thread.sleep (500 + 4 * SLOW_MILLISECONDS);
+
+		final long shown = animator.getShownFrames ();
+		final long dropped = animator.getDroppedFrames ();
+		final long ticks = (long) (RUN_MILLISECONDS / 1000.0 * FRAMES_PER_SECOND);
+		System.out.println (name + ", " + sweep.toString ().toLowerCase () + ": "
+				    + shown + " shown, " + dropped + " dropped, "
+				    + gnuplot.getPendingAcknowledgements () + " pending");
+
+		// A fast gnuplot keeps up with the clock. A slow one gets no
+		// more frames than it can answer, plus the two in flight, but
+		// still enough that the animation moves.
+		if (slow)
+		    passed &= check ("paced", shown <= RUN_MILLISECONDS / SLOW_MILLISECONDS + 3
+				     && shown >= ticks / 5);
+		else
+		    passed &= check ("paced", shown >= ticks / 2 && dropped <= ticks / 10);
+		// A view frame is a few bytes, so the clock never waits on the
+		// pipe: every tick is either shown or dropped
+		if (sweep == Animation.Sweep.VIEW)
+		    passed &= check ("kept time", shown + dropped >= ticks * 9 / 10);
+		passed &= check ("acknowledged", gnuplot.getPendingAcknowledgements () == 0);
+	    }
+
+	gnuplot.close ();
+	return passed;
+    }
+
+    private static boolean check (final String what, final boolean ok)
+    {
+	System.out.println ("  " + what + ": " + (ok ? "ok" : "MISMATCH"));
+	return ok;
+    }
+}
@@ -0,0 +1,44 @@
+package AnimatorTest;
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+// Stands in for gnuplot: answers every print "text" on stderr, as gnuplot
+// does, after sleeping the given number of milliseconds, and ignores
+// everything else, binary data included.
+public class EchoGnuplot
+{
+    private static final Pattern PRINT = Pattern.compile ("print \"(.*)\"");
+
+    public static void main (final String args[])
+	throws IOException, InterruptedException
+    {
+	final long delay = args.length > 0 ? Long.parseLong (args[0]) : 0;
+	final InputStream in = new BufferedInputStream (System.in);
+	final ByteArrayOutputStream line = new ByteArrayOutputStream ();
+	int c;
+	while ((c = in.read ()) >= 0)
+	    {
+		if (c != '\n')
+		    {
+			line.write (c);
+			continue;
+		    }
+
+		// Binary data may precede a command on the same line
+		final Matcher print =
+		    PRINT.matcher (new String (line.toByteArray (), StandardCharsets.ISO_8859_1));
+		line.reset ();
+		if (!print.find ())
+		    continue;
+
+		Thread.sleep (delay);
+		System.err.println (print.group (1));
+		System.err.flush ();
+	    }
+    }
+}
@@ -0,0 +1,106 @@
+package Evaluator;
+
+import java.util.Arrays;
+
+// Evaluates a FlatEvaluator program over whole arrays of x values. Each
+// opcode is applied to a block of samples at a time, using SIMD lanes from
+// jdk.incubator.vector when that module is available (run with
+// --add-modules jdk.incubator.vector) and plain loops otherwise.
+public final class BatchEvaluator
+{
+    private static final int BLOCK = 256;
+    private static final Kernels KERNELS = loadKernels ();
+
+    private final FlatEvaluator program;
+    private final double stack[][];
+
+    public BatchEvaluator (final FlatEvaluator program)
+    {
+	this.program = program;
+	stack = new double[program.maxDepth + program.slots][BLOCK];
+    }
+
+    public static boolean isVectorized ()
+    {
+	return !(KERNELS instanceof ScalarKernels);
+    }
+
+    public BatchEvaluator copy ()
+    {
+	return new BatchEvaluator (program);
+    }
+
+    public void evaluate (final double xs[], final double results[])
+    {
+	evaluate (xs, results, 0, xs.length);
+    }
+
+    public void evaluate (final double xs[],
+			  final double results[],
+			  final int from,
+			  final int to)
+    {
+	if (results.length < to)
+	    throw new IndexOutOfBoundsException ("results is shorter than xs.");
+
+	for (int start = from; start < to; start += BLOCK)
+	    {
+		final int n = Math.min (BLOCK, to - start);
+		evaluateBlock (xs, start, n);
+		System.arraycopy (stack[0], 0, results, start, n);
+	    }
+    }
+
+    private void evaluateBlock (final double xs[], final int start, final int n)
+    {
+	final int code[] = program.code;
+	int top = -1;
+	for (int pc = 0; pc < code.length; ++pc)
+	    {
+		final int opcode = code[pc];
+		switch (opcode)
+		    {
+		    case FlatEvaluator.CONSTANT:
+			Arrays.fill (stack[++top], 0, n, program.constants[code[++pc]]);
+			break;
+		    case FlatEvaluator.VARIABLE:
+			System.arraycopy (xs, start, stack[++top], 0, n);
+			break;
+		    case FlatEvaluator.STORE:
+			System.arraycopy (stack[top], 0, stack[program.maxDepth + code[++pc]], 0, n);
+			break;
+		    case FlatEvaluator.LOAD:
+			System.arraycopy (stack[program.maxDepth + code[++pc]], 0, stack[++top], 0, n);
+			break;
+		    case FlatEvaluator.ADD:
+		    case FlatEvaluator.SUBTRACT:
+		    case FlatEvaluator.MULTIPLY:
+		    case FlatEvaluator.DIVIDE:
+		    case FlatEvaluator.POWER:
+			--top;
+			KERNELS.binary (opcode, stack[top], stack[top + 1], n);
+			break;
+		    default:
+			KERNELS.unary (opcode, stack[top], n);
+			break;
+		    }
+	    }
+    }
+
+    private static Kernels loadKernels ()
+    {
+	if (ModuleLayer.boot ().findModule ("jdk.incubator.vector").isPresent ())
+	    try
+		{
+		    return (Kernels) Class.forName ("Evaluator.VectorKernels")
+			.getDeclaredConstructor ()
+			.newInstance ();
+		}
+	    catch (final ReflectiveOperationException | LinkageError e)
+		{
+		    // Fall back to scalar loops
+		}
+
+	return new ScalarKernels ();
+    }
+}
@@ -0,0 +1,84 @@
+package Evaluator;
+
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Arrays;
+
+// Names every evaluator understands without a user definition.
+public final class Builtins
+{
+    private static final Set<String> OPERATORS =
+	new HashSet<> (Arrays.asList (new String[]
+	    {
+		"+", "-", "*", "/", "^"
+	    }));
+
+    private static final Set<String> FUNCTIONS =
+	new HashSet<> (Arrays.asList (new String[]
+	    {
+		"sin", "cos", "tan", "log", "atan", "acos", "asin", "exp"
+	    }));
+
+    public static final String VARIABLE = "x";
+    public static final String PI = "pi";
+
+    private Builtins ()
+    {
+    }
+
+    public static boolean isOperator (final String name)
+    {
+	return OPERATORS.contains (name);
+    }
+
+    public static boolean isFunction (final String name)
+    {
+	return FUNCTIONS.contains (name);
+    }
+
+    public static double apply (final String function, final double a)
+    {
+	switch (function)
+	    {
+	    case "-":
+		return -a;
+	    case "sin":
+		return Math.sin (a);
+	    case "cos":
+		return Math.cos (a);
+	    case "tan":
+		return Math.tan (a);
+	    case "log":
+		return Math.log (a);
+	    case "atan":
+		return Math.atan (a);
+	    case "acos":
+		return Math.acos (a);
+	    case "asin":
+		return Math.asin (a);
+	    case "exp":
+		return Math.exp (a);
+	    default:
+		throw new UnsupportedOperationException ("Unknown function " + function);
+	    }
+    }
+
+    public static double apply (final String operator, final double a, final double b)
+    {
+	switch (operator)
+	    {
+	    case "+":
+		return a + b;
+	    case "-":
+		return a - b;
+	    case "*":
+		return a * b;
+	    case "/":
+		return a / b;
+	    case "^":
+		return Math.pow (a, b);
+	    default:
+		throw new UnsupportedOperationException ("Unknown operator " + operator);
+	    }
+    }
+}
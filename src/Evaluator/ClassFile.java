@@ -0,0 +1,194 @@
+package Evaluator;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Map;
+import java.util.HashMap;
+
+// Minimal class file writer: one class, no fields, methods with a single
+// Code attribute and no branches (so no StackMapTable is required).
+final class ClassFile
+{
+    public static final int ACC_PUBLIC = 0x0001;
+    public static final int ACC_FINAL = 0x0010;
+    public static final int ACC_SUPER = 0x0020;
+
+    private static final int MAGIC = 0xCAFEBABE;
+    private static final int MAJOR_VERSION = 52;
+
+    private static final int CONSTANT_UTF8 = 1;
+    private static final int CONSTANT_DOUBLE = 6;
+    private static final int CONSTANT_CLASS = 7;
+    private static final int CONSTANT_METHODREF = 10;
+    private static final int CONSTANT_NAME_AND_TYPE = 12;
+
+    private final ByteArrayOutputStream pool;
+    private final Map<String, Integer> poolIndices;
+    private int poolCount;
+
+    private final ByteArrayOutputStream methods;
+    private int methodCount;
+
+    private final int thisClass;
+    private final int superClass;
+    private final int interfaceClass;
+    private final int codeName;
+
+    public ClassFile (final String name, final String superName, final String interfaceName)
+    {
+	pool = new ByteArrayOutputStream ();
+	poolIndices = new HashMap<> ();
+	poolCount = 1;
+	methods = new ByteArrayOutputStream ();
+	methodCount = 0;
+
+	thisClass = classRef (name);
+	superClass = classRef (superName);
+	interfaceClass = classRef (interfaceName);
+	codeName = utf8 ("Code");
+    }
+
+    public int utf8 (final String value)
+    {
+	final String key = "U" + value;
+	final Integer index = poolIndices.get (key);
+	if (index != null)
+	    return index;
+
+	final byte bytes[] = value.getBytes (StandardCharsets.UTF_8);
+	u1 (pool, CONSTANT_UTF8);
+	u2 (pool, bytes.length);
+	pool.write (bytes, 0, bytes.length);
+	return register (key, 1);
+    }
+
+    public int classRef (final String name)
+    {
+	final String key = "C" + name;
+	final Integer index = poolIndices.get (key);
+	if (index != null)
+	    return index;
+
+	final int nameIndex = utf8 (name);
+	u1 (pool, CONSTANT_CLASS);
+	u2 (pool, nameIndex);
+	return register (key, 1);
+    }
+
+    public int methodRef (final String owner, final String name, final String descriptor)
+    {
+	final String key = "M" + owner + "." + name + descriptor;
+	final Integer index = poolIndices.get (key);
+	if (index != null)
+	    return index;
+
+	final int ownerIndex = classRef (owner);
+	final int nameAndType = nameAndType (name, descriptor);
+	u1 (pool, CONSTANT_METHODREF);
+	u2 (pool, ownerIndex);
+	u2 (pool, nameAndType);
+	return register (key, 1);
+    }
+
+    private int nameAndType (final String name, final String descriptor)
+    {
+	final String key = "N" + name + descriptor;
+	final Integer index = poolIndices.get (key);
+	if (index != null)
+	    return index;
+
+	final int nameIndex = utf8 (name);
+	final int descriptorIndex = utf8 (descriptor);
+	u1 (pool, CONSTANT_NAME_AND_TYPE);
+	u2 (pool, nameIndex);
+	u2 (pool, descriptorIndex);
+	return register (key, 1);
+    }
+
+    public int doubleConstant (final double value)
+    {
+	final long bits = Double.doubleToRawLongBits (value);
+	final String key = "D" + bits;
+	final Integer index = poolIndices.get (key);
+	if (index != null)
+	    return index;
+
+	u1 (pool, CONSTANT_DOUBLE);
+	u4 (pool, (int) (bits >>> 32));
+	u4 (pool, (int) bits);
+	// Doubles take up two constant pool slots
+	return register (key, 2);
+    }
+
+    public void addMethod (final int access,
+			   final String name,
+			   final String descriptor,
+			   final int maxStack,
+			   final int maxLocals,
+			   final byte code[])
+    {
+	u2 (methods, access);
+	u2 (methods, utf8 (name));
+	u2 (methods, utf8 (descriptor));
+	// A single Code attribute
+	u2 (methods, 1);
+	u2 (methods, codeName);
+	u4 (methods, 12 + code.length);
+	u2 (methods, maxStack);
+	u2 (methods, maxLocals);
+	u4 (methods, code.length);
+	methods.write (code, 0, code.length);
+	// No exception table, no attributes
+	u2 (methods, 0);
+	u2 (methods, 0);
+	++methodCount;
+    }
+
+    public byte[] toByteArray ()
+    {
+	final ByteArrayOutputStream out = new ByteArrayOutputStream ();
+	u4 (out, MAGIC);
+	u2 (out, 0);
+	u2 (out, MAJOR_VERSION);
+	u2 (out, poolCount);
+	out.writeBytes (pool.toByteArray ());
+	u2 (out, ACC_PUBLIC | ACC_FINAL | ACC_SUPER);
+	u2 (out, thisClass);
+	u2 (out, superClass);
+	u2 (out, 1);
+	u2 (out, interfaceClass);
+	// No fields
+	u2 (out, 0);
+	u2 (out, methodCount);
+	out.writeBytes (methods.toByteArray ());
+	// No class attributes
+	u2 (out, 0);
+
+	return out.toByteArray ();
+    }
+
+    private int register (final String key, final int slots)
+    {
+	final int index = poolCount;
+	poolIndices.put (key, index);
+	poolCount += slots;
+	return index;
+    }
+
+    private static void u1 (final ByteArrayOutputStream out, final int value)
+    {
+	out.write (value);
+    }
+
+    static void u2 (final ByteArrayOutputStream out, final int value)
+    {
+	out.write (value >>> 8);
+	out.write (value);
+    }
+
+    private static void u4 (final ByteArrayOutputStream out, final int value)
+    {
+	u2 (out, value >>> 16);
+	u2 (out, value);
+    }
+}
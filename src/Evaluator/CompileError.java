@@ -0,0 +1,16 @@
+package Evaluator;
+
+final public class CompileError extends Exception
+{
+    private static final long serialVersionUID = 1L;
+
+    public CompileError (final String message)
+    {
+	super (message);
+    }
+
+    public CompileError (final String message, final Throwable cause)
+    {
+	super (message, cause);
+    }
+}
@@ -0,0 +1,136 @@
+package Evaluator;
+
+import Parser.Expression;
+import Parser.Fold;
+
+import java.util.List;
+import java.util.Map;
+
+// Symbolic derivatives of expressions in one variable. The result is an
+// ordinary Expression made of the same operators and builtins, run through
+// the Optimizer, so any evaluator can compile it like a user function.
+public final class Differentiator extends Fold<Expression, CompileError>
+{
+    private final String variable;
+
+    private Differentiator (final String variable)
+    {
+	this.variable = variable;
+    }
+
+    // User functions in exp are inlined from definitions first
+    public static Expression derivative (final Expression exp,
+					 final Map<String, Expression> definitions,
+					 final String variable)
+	throws CompileError
+    {
+	return derivative (Inliner.inline (exp, definitions), variable);
+    }
+
+    public static Expression derivative (final Expression exp, final String variable)
+	throws CompileError
+    {
+	final Differentiator differentiator = new Differentiator (variable);
+	final Expression derivative = differentiator.apply (Optimizer.optimize (exp));
+	return (derivative == null) ? new Expression (0.0) : Optimizer.optimize (derivative);
+    }
+
+    // Derivatives are null where exp does not depend on the variable, so
+    // whether a subtree is constant comes out of the same walk instead of
+    // a rescan per node
+    protected Expression leaf (final Expression exp)
+    {
+	if (exp.getType () == Expression.Type.NAME && exp.getName ().equals (variable))
+	    return new Expression (1.0);
+	return null;
+    }
+
+    protected Expression node (final Expression exp, final List<Expression> derivatives)
+	throws CompileError
+    {
+	final String op = exp.getOperator ();
+	boolean constant = true;
+	for (final Expression derivative: derivatives)
+	    constant &= derivative == null;
+
+	if (constant)
+	    return null;
+	else if (exp.getArity () == 1)
+	    return chain (op, exp.getNthOperand (0), derivatives.get (0));
+	else if (exp.getArity () != 2 || !Builtins.isOperator (op))
+	    throw new CompileError ("cannot differentiate '" + op + "'.");
+
+	final Expression a = exp.getNthOperand (0);
+	final Expression b = exp.getNthOperand (1);
+	final boolean bConstant = derivatives.get (1) == null;
+	final Expression da = (derivatives.get (0) == null) ? new Expression (0.0) : derivatives.get (0);
+	final Expression db = bConstant ? new Expression (0.0) : derivatives.get (1);
+	switch (op)
+	    {
+	    case "+":
+	    case "-":
+		return new Expression (op, da, db);
+	    case "*":
+		return new Expression ("+",
+				       new Expression ("*", da, b),
+				       new Expression ("*", a, db));
+	    case "/":
+		return new Expression ("/",
+				       new Expression ("-",
+						       new Expression ("*", da, b),
+						       new Expression ("*", a, db)),
+				       new Expression ("^", b, new Expression (2.0)));
+	    default:
+		if (bConstant)
+		    // n a^(n-1) a'
+		    return new Expression ("*",
+					   new Expression ("*", b,
+							   new Expression ("^", a,
+									   new Expression ("-", b, new Expression (1.0)))),
+					   da);
+
+		// a^b (b' log a + b a'/a)
+		return new Expression ("*", exp,
+				       new Expression ("+",
+						       new Expression ("*", db, new Expression ("log", a)),
+						       new Expression ("/", new Expression ("*", b, da), a)));
+	    }
+    }
+
+    // The derivative of op(a), given a' = da
+    private static Expression chain (final String op, final Expression a, final Expression da)
+	throws CompileError
+    {
+	final Expression one = new Expression (1.0);
+	final Expression square = new Expression ("^", a, new Expression (2.0));
+	switch (op)
+	    {
+	    case "-":
+		return new Expression ("-", da);
+	    case "sin":
+		return new Expression ("*", new Expression ("cos", a), da);
+	    case "cos":
+		return new Expression ("-", new Expression ("*", new Expression ("sin", a), da));
+	    case "tan":
+		return new Expression ("/", da,
+				       new Expression ("^", new Expression ("cos", a), new Expression (2.0)));
+	    case "log":
+		return new Expression ("/", da, a);
+	    case "exp":
+		return new Expression ("*", new Expression ("exp", a), da);
+	    case "atan":
+		return new Expression ("/", da, new Expression ("+", one, square));
+	    case "asin":
+		return new Expression ("/", da,
+				       new Expression ("^", new Expression ("-", one, square),
+						       new Expression (0.5)));
+	    case "acos":
+		return new Expression ("-",
+				       new Expression ("/", da,
+						       new Expression ("^", new Expression ("-", one, square),
+								       new Expression (0.5))));
+	    default:
+		throw new CompileError ("cannot differentiate '" + op + "'.");
+	    }
+    }
+}
@@ -0,0 +1,125 @@
+package Evaluator;
+
+import Parser.Expression;
+import Parser.Fold;
+
+import java.util.List;
+import java.util.Map;
+import java.util.IdentityHashMap;
+import java.util.Deque;
+import java.util.ArrayDeque;
+
+// Walks an inlined expression in postfix order, operands left to right
+// before their operator, for the evaluators that turn it into stack code.
+// The expression is interned first, and an operator node used more than
+// once, say Y1 (x) in Y1 (x) * Y1 (x) + Y1 (x), is stored into a slot the
+// first time it is computed and loaded from there afterwards, so every
+// distinct node is evaluated once per sample. The walk keeps its own
+// stack, so however deep the expression is it never shows up as Java
+// stack depth.
+abstract class Emitter
+{
+    abstract void number (double value)
+	throws CompileError;
+
+    // x or pi, the only names left once functions are inlined
+    abstract void name (String name)
+	throws CompileError;
+
+    abstract void operator (String operator, int arity)
+	throws CompileError;
+
+    // Copies the value on top of the stack into slot, leaving it there
+    abstract void store (int slot)
+	throws CompileError;
+
+    abstract void load (int slot)
+	throws CompileError;
+
+    // Returns the number of slots used
+    final int emit (final Expression exp)
+	throws CompileError
+    {
+	final Expression root = new Interner ().intern (exp);
+	final Map<Expression, Integer> uses = countUses (root);
+	final Map<Expression, Integer> slots = new IdentityHashMap<> ();
+	final Deque<Pending> stack = new ArrayDeque<> ();
+	visit (root, stack, slots);
+	while (!stack.isEmpty ())
+	    {
+		final Pending top = stack.peek ();
+		if (top.next < top.exp.getArity ())
+		    {
+			visit (top.exp.getNthOperand (top.next++), stack, slots);
+			continue;
+		    }
+
+		stack.pop ();
+		operator (top.exp.getOperator (), top.exp.getArity ());
+		if (uses.getOrDefault (top.exp, 0) > 1)
+		    {
+			final int slot = slots.size ();
+			slots.put (top.exp, slot);
+			store (slot);
+		    }
+	    }
+
+	return slots.size ();
+    }
+
+    private void visit (final Expression exp,
+			final Deque<Pending> stack,
+			final Map<Expression, Integer> slots)
+	throws CompileError
+    {
+	switch (exp.getType ())
+	    {
+	    case NUMBER:
+		number (exp.getNumber ());
+		break;
+	    case NAME:
+		name (exp.getName ());
+		break;
+	    case OPERATOR:
+		final Integer slot = slots.get (exp);
+		if (slot != null)
+		    load (slot);
+		else
+		    stack.push (new Pending (exp));
+		break;
+	    }
+    }
+
+    // How many parents each node of an interned DAG has
+    private static Map<Expression, Integer> countUses (final Expression root)
+    {
+	final Map<Expression, Integer> uses = new IdentityHashMap<> ();
+	new Fold<Void, RuntimeException> ()
+	    {
+		protected Void leaf (final Expression exp)
+		{
+		    return null;
+		}
+
+		protected Void node (final Expression exp, final List<Void> operands)
+		{
+		    for (int i = 0; i < exp.getArity (); ++i)
+			uses.merge (exp.getNthOperand (i), 1, Integer::sum);
+		    return null;
+		}
+	    }.apply (root);
+	return uses;
+    }
+
+    private static final class Pending
+    {
+	final Expression exp;
+	int next;
+
+	Pending (final Expression exp)
+	{
+	    this.exp = exp;
+	    next = 0;
+	}
+    }
+}
@@ -0,0 +1,272 @@
+package Evaluator;
+
+import Parser.Expression;
+
+import java.util.Map;
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+
+// Evaluates an Expression linearized into postfix opcodes over a primitive
+// double stack. Values used more than once are kept in slots just past the
+// top of the stack. Nothing is allocated per sample; applyAsDouble reuses
+// this evaluator's own stack, so use copy () to get one per thread.
+public final class FlatEvaluator implements DoubleUnaryOperator
+{
+    static final int CONSTANT = 0;
+    static final int VARIABLE = 1;
+    static final int ADD = 2;
+    static final int SUBTRACT = 3;
+    static final int MULTIPLY = 4;
+    static final int DIVIDE = 5;
+    static final int POWER = 6;
+    static final int NEGATE = 7;
+    static final int SIN = 8;
+    static final int COS = 9;
+    static final int TAN = 10;
+    static final int LOG = 11;
+    static final int ATAN = 12;
+    static final int ACOS = 13;
+    static final int ASIN = 14;
+    static final int EXP = 15;
+    static final int STORE = 16;
+    static final int LOAD = 17;
+
+    final int code[];
+    final double constants[];
+    final int maxDepth;
+    final int slots;
+    private final double stack[];
+
+    private FlatEvaluator (final int code[],
+			   final double constants[],
+			   final int maxDepth,
+			   final int slots)
+    {
+	this.code = code;
+	this.constants = constants;
+	this.maxDepth = maxDepth;
+	this.slots = slots;
+	stack = new double[maxDepth + slots];
+    }
+
+    public static FlatEvaluator compile (final Expression exp,
+					 final Map<String, Expression> definitions)
+	throws CompileError
+    {
+	final Linearizer linearizer = new Linearizer ();
+	final int slots = linearizer.emit (Optimizer.optimize (Inliner.inline (exp, definitions)));
+	return new FlatEvaluator (Arrays.copyOf (linearizer.code, linearizer.codeLength),
+				  Arrays.copyOf (linearizer.constants,
+						 linearizer.constantCount),
+				  linearizer.maxDepth,
+				  slots);
+    }
+
+    public FlatEvaluator copy ()
+    {
+	return new FlatEvaluator (code, constants, maxDepth, slots);
+    }
+
+    // Including the slots
+    public int getStackSize ()
+    {
+	return maxDepth + slots;
+    }
+
+    public double applyAsDouble (final double x)
+    {
+	return evaluate (x, stack);
+    }
+
+    public double evaluate (final double x, final double stack[])
+    {
+	int top = -1;
+	for (int pc = 0; pc < code.length; ++pc)
+	    switch (code[pc])
+		{
+		case CONSTANT:
+		    stack[++top] = constants[code[++pc]];
+		    break;
+		case VARIABLE:
+		    stack[++top] = x;
+		    break;
+		case ADD:
+		    --top;
+		    stack[top] += stack[top + 1];
+		    break;
+		case SUBTRACT:
+		    --top;
+		    stack[top] -= stack[top + 1];
+		    break;
+		case MULTIPLY:
+		    --top;
+		    stack[top] *= stack[top + 1];
+		    break;
+		case DIVIDE:
+		    --top;
+		    stack[top] /= stack[top + 1];
+		    break;
+		case POWER:
+		    --top;
+		    stack[top] = Math.pow (stack[top], stack[top + 1]);
+		    break;
+		case NEGATE:
+		    stack[top] = -stack[top];
+		    break;
+		case SIN:
+		    stack[top] = Math.sin (stack[top]);
+		    break;
+		case COS:
+		    stack[top] = Math.cos (stack[top]);
+		    break;
+		case TAN:
+		    stack[top] = Math.tan (stack[top]);
+		    break;
+		case LOG:
+		    stack[top] = Math.log (stack[top]);
+		    break;
+		case ATAN:
+		    stack[top] = Math.atan (stack[top]);
+		    break;
+		case ACOS:
+		    stack[top] = Math.acos (stack[top]);
+		    break;
+		case ASIN:
+		    stack[top] = Math.asin (stack[top]);
+		    break;
+		case EXP:
+		    stack[top] = Math.exp (stack[top]);
+		    break;
+		case STORE:
+		    stack[maxDepth + code[++pc]] = stack[top];
+		    break;
+		case LOAD:
+		    stack[++top] = stack[maxDepth + code[++pc]];
+		    break;
+		default:
+		    throw new IllegalStateException ("Unknown opcode " + code[pc]);
+		}
+
+	return stack[0];
+    }
+
+    static int opcode (final String operator, final int arity)
+	throws CompileError
+    {
+	if (arity == 1)
+	    switch (operator)
+		{
+		case "-":
+		    return NEGATE;
+		case "sin":
+		    return SIN;
+		case "cos":
+		    return COS;
+		case "tan":
+		    return TAN;
+		case "log":
+		    return LOG;
+		case "atan":
+		    return ATAN;
+		case "acos":
+		    return ACOS;
+		case "asin":
+		    return ASIN;
+		case "exp":
+		    return EXP;
+		}
+	else if (arity == 2)
+	    switch (operator)
+		{
+		case "+":
+		    return ADD;
+		case "-":
+		    return SUBTRACT;
+		case "*":
+		    return MULTIPLY;
+		case "/":
+		    return DIVIDE;
+		case "^":
+		    return POWER;
+		}
+
+	throw new CompileError ("Unknown operator " + operator);
+    }
+
+    private static final class Linearizer extends Emitter
+    {
+	int code[] = new int[16];
+	int codeLength = 0;
+	double constants[] = new double[4];
+	int constantCount = 0;
+	int depth = 0;
+	int maxDepth = 0;
+
+	void number (final double value)
+	{
+	    constant (value);
+	}
+
+	void name (final String name)
+	{
+	    if (name.equals (Builtins.VARIABLE))
+		{
+		    write (VARIABLE);
+		    push ();
+		}
+	    else
+		constant (Math.PI);
+	}
+
+	void operator (final String operator, final int arity)
+	    throws CompileError
+	{
+	    write (opcode (operator, arity));
+	    depth -= arity - 1;
+	}
+
+	void store (final int slot)
+	{
+	    write (STORE);
+	    write (slot);
+	}
+
+	void load (final int slot)
+	{
+	    write (LOAD);
+	    write (slot);
+	    push ();
+	}
+
+	private void constant (final double value)
+	{
+	    int index = 0;
+	    while (index < constantCount
+		   && Double.compare (constants[index], value) != 0)
+		++index;
+
+	    if (index == constantCount)
+		{
+		    if (constantCount == constants.length)
+			constants = Arrays.copyOf (constants, 2 * constantCount);
+		    constants[constantCount++] = value;
+		}
+
+	    write (CONSTANT);
+	    write (index);
+	    push ();
+	}
+
+	private void write (final int word)
+	{
+	    if (codeLength == code.length)
+		code = Arrays.copyOf (code, 2 * codeLength);
+	    code[codeLength++] = word;
+	}
+
+	private void push ()
+	{
+	    maxDepth = Math.max (maxDepth, ++depth);
+	}
+    }
+}
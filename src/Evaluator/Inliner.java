@@ -0,0 +1,109 @@
+package Evaluator;
+
+import Parser.Expression;
+import Parser.Fold;
+
+import java.util.Map;
+import java.util.List;
+import java.util.Deque;
+import java.util.ArrayDeque;
+
+// Replaces calls to user functions with their bodies so evaluators only see
+// x, pi, numbers and builtins. Each body is expanded once, and the argument
+// of a call is shared by every use of x in the copy of the body.
+public final class Inliner extends Fold<Expression, CompileError>
+{
+    private final Map<String, Expression> definitions;
+    private final Deque<String> expanding;
+
+    private Inliner (final Map<String, Expression> definitions)
+    {
+	this.definitions = definitions;
+	expanding = new ArrayDeque<> ();
+    }
+
+    public static Expression inline (final Expression exp,
+				     final Map<String, Expression> definitions)
+	throws CompileError
+    {
+	return new Inliner (definitions).apply (exp);
+    }
+
+    protected Expression leaf (final Expression exp)
+	throws CompileError
+    {
+	if (exp.getType () == Expression.Type.NAME
+	    && !exp.getName ().equals (Builtins.VARIABLE)
+	    && !exp.getName ().equals (Builtins.PI))
+	    throw new CompileError ("reference to undefined name '"
+				    + exp.getName () + "'.");
+	return exp;
+    }
+
+    protected Expression node (final Expression exp, final List<Expression> operands)
+	throws CompileError
+    {
+	final String op = exp.getOperator ();
+	if (definitions.containsKey (op))
+	    {
+		assertArity (op, operands.size (), 1);
+		return call (op, operands.get (0));
+	    }
+	else if (Builtins.isFunction (op))
+	    assertArity (op, operands.size (), 1);
+	else if (op.equals ("-"))
+	    {
+		if (operands.size () != 1 && operands.size () != 2)
+		    throw new CompileError ("'-' takes one or two arguments.");
+	    }
+	else if (Builtins.isOperator (op))
+	    assertArity (op, operands.size (), 2);
+	else
+	    throw new CompileError ("reference to undefined operator '"
+				    + op + "'.");
+
+	return new Expression (op, operands);
+    }
+
+    private Expression call (final String function, final Expression argument)
+	throws CompileError
+    {
+	if (expanding.contains (function))
+	    throw new CompileError (function + " is defined in terms of itself.");
+
+	expanding.push (function);
+	final Expression body = apply (definitions.get (function));
+	expanding.pop ();
+
+	return substitute (body, argument);
+    }
+
+    private static Expression substitute (final Expression body,
+					  final Expression argument)
+    {
+	return new Fold<Expression, RuntimeException> ()
+	    {
+		protected Expression leaf (final Expression exp)
+		{
+		    return (exp.getType () == Expression.Type.NAME
+			    && exp.getName ().equals (Builtins.VARIABLE)) ? argument : exp;
+		}
+
+		protected Expression node (final Expression exp, final List<Expression> operands)
+		{
+		    return new Expression (exp.getOperator (), operands);
+		}
+	    }.apply (body);
+    }
+
+    private static void assertArity (final String function,
+				     final int actual,
+				     final int expected)
+	throws CompileError
+    {
+	if (actual != expected)
+	    throw new CompileError ("'" + function + "' takes " + expected
+				    + " argument" + (expected == 1 ? "" : "s")
+				    + " but was given " + actual + ".");
+    }
+}
@@ -0,0 +1,105 @@
+package Evaluator;
+
+import Parser.Expression;
+import Parser.Fold;
+
+import java.util.Map;
+import java.util.HashMap;
+import java.util.List;
+
+// Hash-consing factory for Expression nodes: structurally equal sub-trees
+// interned through the same Interner come back as the same node, turning a
+// set of trees into a DAG. Children are interned first, so two nodes are
+// equal exactly when their operators match and their children are
+// identical, and comparing them never walks a whole sub-tree.
+public final class Interner extends Fold<Expression, RuntimeException>
+{
+    private final Map<Key, Expression> nodes;
+
+    public Interner ()
+    {
+	nodes = new HashMap<> ();
+    }
+
+    public Expression intern (final Expression exp)
+    {
+	return apply (exp);
+    }
+
+    protected Expression leaf (final Expression exp)
+    {
+	if (exp.getType () == Expression.Type.NUMBER)
+	    return lookup (new Key (exp.getType (), null, exp.getNumber (), NO_CHILDREN), exp);
+	return lookup (new Key (exp.getType (), exp.getName (), 0, NO_CHILDREN), exp);
+    }
+
+    protected Expression node (final Expression exp, final List<Expression> children)
+    {
+	final Key key = new Key (exp.getType (), exp.getOperator (), 0,
+				 children.toArray (NO_CHILDREN));
+	final Expression existing = nodes.get (key);
+	if (existing != null)
+	    return existing;
+
+	final Expression node = new Expression (exp.getOperator (), children);
+	nodes.put (key, node);
+	return node;
+    }
+
+    private Expression lookup (final Key key, final Expression exp)
+    {
+	final Expression existing = nodes.putIfAbsent (key, exp);
+	return (existing != null) ? existing : exp;
+    }
+
+    private static final Expression NO_CHILDREN[] = {};
+
+    private static final class Key
+    {
+	final Expression.Type type;
+	final String symbol;
+	final long bits;
+	final Expression children[];
+	final int hash;
+
+	Key (final Expression.Type type,
+	     final String symbol,
+	     final double number,
+	     final Expression children[])
+	{
+	    this.type = type;
+	    this.symbol = symbol;
+	    this.bits = Double.doubleToLongBits (number);
+	    this.children = children;
+
+	    int h = type.hashCode () * 31 + (symbol == null ? 0 : symbol.hashCode ());
+	    h = h * 31 + Long.hashCode (bits);
+	    for (final Expression child: children)
+		h = h * 31 + System.identityHashCode (child);
+	    hash = h;
+	}
+
+	public int hashCode ()
+	{
+	    return hash;
+	}
+
+	public boolean equals (final Object o)
+	{
+	    if (!(o instanceof Key))
+		return false;
+
+	    final Key other = (Key) o;
+	    if (type != other.type || bits != other.bits
+		|| children.length != other.children.length
+		|| (symbol == null ? other.symbol != null : !symbol.equals (other.symbol)))
+		return false;
+
+	    for (int i = 0; i < children.length; ++i)
+		if (children[i] != other.children[i])
+		    return false;
+
+	    return true;
+	}
+    }
+}
@@ -0,0 +1,261 @@
+package Evaluator;
+
+// A closed range of doubles [lo, hi] with the arithmetic of the builtins.
+// Every result is rounded outward, so it contains the exact value of the
+// operation for every point of the operands. Points where a builtin is
+// undefined (log of a negative number, ...) are left out, and an operation
+// with no defined point at all gives EMPTY.
+public final class Interval
+{
+    public static final Interval EMPTY = new Interval (Double.NaN, Double.NaN);
+    public static final Interval ENTIRE =
+	new Interval (Double.NEGATIVE_INFINITY, Double.POSITIVE_INFINITY);
+
+    private static final double HALF_PI = Math.PI / 2;
+    private static final double TWO_PI = 2 * Math.PI;
+
+    private final double lo;
+    private final double hi;
+
+    private Interval (final double lo, final double hi)
+    {
+	this.lo = lo;
+	this.hi = hi;
+    }
+
+    public static Interval of (final double lo, final double hi)
+    {
+	if (Double.isNaN (lo) || Double.isNaN (hi) || lo > hi)
+	    return EMPTY;
+
+	return new Interval (lo, hi);
+    }
+
+    public static Interval of (final double value)
+    {
+	return of (value, value);
+    }
+
+    public double getLo ()
+    {
+	return lo;
+    }
+
+    public double getHi ()
+    {
+	return hi;
+    }
+
+    public boolean isEmpty ()
+    {
+	return Double.isNaN (lo);
+    }
+
+    public boolean isBounded ()
+    {
+	return !isEmpty () && !Double.isInfinite (lo) && !Double.isInfinite (hi);
+    }
+
+    public double getWidth ()
+    {
+	return hi - lo;
+    }
+
+    public Interval union (final Interval other)
+    {
+	if (isEmpty ())
+	    return other;
+	else if (other.isEmpty ())
+	    return this;
+
+	return new Interval (Math.min (lo, other.lo), Math.max (hi, other.hi));
+    }
+
+    public boolean contains (final double value)
+    {
+	return lo <= value && value <= hi;
+    }
+
+    public Interval add (final Interval other)
+    {
+	if (isEmpty () || other.isEmpty ())
+	    return EMPTY;
+
+	return outward (lo + other.lo, hi + other.hi);
+    }
+
+    public Interval subtract (final Interval other)
+    {
+	if (isEmpty () || other.isEmpty ())
+	    return EMPTY;
+
+	return outward (lo - other.hi, hi - other.lo);
+    }
+
+    public Interval multiply (final Interval other)
+    {
+	if (isEmpty () || other.isEmpty ())
+	    return EMPTY;
+
+	final double a = product (lo, other.lo), b = product (lo, other.hi);
+	final double c = product (hi, other.lo), d = product (hi, other.hi);
+	return outward (Math.min (Math.min (a, b), Math.min (c, d)),
+			Math.max (Math.max (a, b), Math.max (c, d)));
+    }
+
+    public Interval divide (final Interval other)
+    {
+	if (isEmpty () || other.isEmpty () || (other.lo == 0 && other.hi == 0))
+	    return EMPTY;
+	else if (other.contains (0))
+	    return ENTIRE;
+
+	final double a = lo / other.lo, b = lo / other.hi;
+	final double c = hi / other.lo, d = hi / other.hi;
+	return outward (Math.min (Math.min (a, b), Math.min (c, d)),
+			Math.max (Math.max (a, b), Math.max (c, d)));
+    }
+
+    public Interval negate ()
+    {
+	return isEmpty () ? EMPTY : new Interval (-hi, -lo);
+    }
+
+    public Interval abs ()
+    {
+	if (isEmpty () || lo >= 0)
+	    return this;
+	else if (hi <= 0)
+	    return negate ();
+
+	return new Interval (0, Math.max (-lo, hi));
+    }
+
+    public Interval power (final Interval exponent)
+    {
+	if (isEmpty () || exponent.isEmpty ())
+	    return EMPTY;
+
+	final double n = exponent.lo;
+	if (n == exponent.hi && n == Math.rint (n) && Math.abs (n) <= Integer.MAX_VALUE)
+	    return power ((int) n);
+
+	// Negative bases only have powers at integer exponents, which can
+	// have either sign; otherwise a^b is exp(b log a) for a >= 0
+	if (lo < 0 && Math.ceil (exponent.lo) <= Math.floor (exponent.hi))
+	    return ENTIRE;
+
+	return intersect (0, Double.POSITIVE_INFINITY).log ().multiply (exponent).exp ();
+    }
+
+    private Interval power (final int n)
+    {
+	if (n == 0)
+	    return of (1);
+	else if (n < 0)
+	    return of (1).divide (power (-n));
+	else if (n % 2 == 1 || lo >= 0)
+	    return outward (Math.pow (lo, n), Math.pow (hi, n));
+	else if (hi <= 0)
+	    return outward (Math.pow (hi, n), Math.pow (lo, n));
+
+	return outward (0, Math.pow (Math.max (-lo, hi), n)).intersect (0, Double.POSITIVE_INFINITY);
+    }
+
+    public Interval apply (final String function)
+    {
+	if (isEmpty ())
+	    return EMPTY;
+
+	switch (function)
+	    {
+	    case "-":
+		return negate ();
+	    case "sin":
+		return periodic (lo - HALF_PI, hi - HALF_PI, Math.sin (lo), Math.sin (hi));
+	    case "cos":
+		return periodic (lo, hi, Math.cos (lo), Math.cos (hi));
+	    case "tan":
+		if (getWidth () >= Math.PI || containsMultiple (lo - HALF_PI, hi - HALF_PI, Math.PI))
+		    return ENTIRE;
+		return outward (Math.tan (lo), Math.tan (hi));
+	    case "log":
+		return log ();
+	    case "exp":
+		return exp ();
+	    case "atan":
+		return outward (Math.atan (lo), Math.atan (hi));
+	    case "asin":
+		final Interval sine = intersect (-1, 1);
+		return sine.isEmpty () ? EMPTY : outward (Math.asin (sine.lo), Math.asin (sine.hi));
+	    case "acos":
+		final Interval cosine = intersect (-1, 1);
+		return cosine.isEmpty () ? EMPTY : outward (Math.acos (cosine.hi), Math.acos (cosine.lo));
+	    default:
+		throw new IllegalArgumentException ("Unknown function: " + function);
+	    }
+    }
+
+    private Interval log ()
+    {
+	final Interval positive = intersect (0, Double.POSITIVE_INFINITY);
+	if (positive.isEmpty ())
+	    return EMPTY;
+
+	return outward (Math.log (positive.lo), Math.log (positive.hi));
+    }
+
+    private Interval exp ()
+    {
+	if (isEmpty ())
+	    return EMPTY;
+
+	return outward (Math.exp (lo), Math.exp (hi)).intersect (0, Double.POSITIVE_INFINITY);
+    }
+
+    // Range of cos over a shifted interval [from, to], given the values at
+    // its ends: cos peaks at multiples of 2pi and bottoms out halfway between
+    private static Interval periodic (final double from,
+				      final double to,
+				      final double atFrom,
+				      final double atTo)
+    {
+	if (!(to - from < TWO_PI))
+	    return of (-1, 1);
+
+	final double max = containsMultiple (from, to, TWO_PI) ? 1 : Math.max (atFrom, atTo);
+	final double min = containsMultiple (from - Math.PI, to - Math.PI, TWO_PI)
+	    ? -1 : Math.min (atFrom, atTo);
+	return outward (min, max).intersect (-1, 1);
+    }
+
+    // Whether [from, to] holds a multiple of period. Near misses count, as
+    // pi itself and the shifts by it are rounded.
+    private static boolean containsMultiple (final double from, final double to, final double period)
+    {
+	final double slack = 4 * Math.ulp (Math.max (Math.abs (from), Math.abs (to))) + 1e-15;
+	return Math.ceil ((from - slack) / period) <= Math.floor ((to + slack) / period);
+    }
+
+    private Interval intersect (final double from, final double to)
+    {
+	return of (Math.max (lo, from), Math.min (hi, to));
+    }
+
+    // 0 times infinity is 0 here: the infinite end is only approached
+    private static double product (final double a, final double b)
+    {
+	return (a == 0 || b == 0) ? 0 : a * b;
+    }
+
+    // Widens by an ulp on each side to cover rounding
+    private static Interval outward (final double lo, final double hi)
+    {
+	return of (Math.nextDown (lo), Math.nextUp (hi));
+    }
+
+    public String toString ()
+    {
+	return isEmpty () ? "[]" : "[" + lo + ", " + hi + "]";
+    }
+}
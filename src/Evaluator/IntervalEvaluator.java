@@ -0,0 +1,207 @@
+package Evaluator;
+
+import Parser.Expression;
+
+import java.util.Map;
+import java.util.List;
+import java.util.ArrayList;
+
+// Evaluates an expression over a whole interval of x at once with Interval
+// arithmetic. The result contains every value the expression takes there,
+// though it can be wider; bound () splits the interval until the pieces
+// are tight, which gives the range of a function for axis bounds.
+public final class IntervalEvaluator
+{
+    private static final int SAMPLES = 64;
+
+    // The expression in postfix order: per step its FlatEvaluator opcode,
+    // and the constant, function or slot it uses. Slots follow the stack.
+    private final int opcodes[];
+    private final Interval constants[];
+    private final String functions[];
+    private final int slots[];
+    private final int maxDepth;
+    private final int slotCount;
+
+    private IntervalEvaluator (final Program program)
+    {
+	final int count = program.opcodes.size ();
+	opcodes = new int[count];
+	slots = new int[count];
+	for (int i = 0; i < count; ++i)
+	    {
+		opcodes[i] = program.opcodes.get (i);
+		slots[i] = program.slots.get (i);
+	    }
+	constants = program.constants.toArray (new Interval[count]);
+	functions = program.functions.toArray (new String[count]);
+	maxDepth = program.maxDepth;
+	slotCount = program.slotCount;
+    }
+
+    public static IntervalEvaluator compile (final Expression exp,
+					     final Map<String, Expression> definitions)
+	throws CompileError
+    {
+	// Not optimized: folding constants would round pi and the results in
+	// the ordinary way, and the bounds must hold the exact values
+	final Program program = new Program ();
+	program.slotCount = program.emit (Inliner.inline (exp, definitions));
+	return new IntervalEvaluator (program);
+    }
+
+    public Interval evaluate (final Interval x)
+    {
+	final Interval stack[] = new Interval[maxDepth + slotCount];
+	int top = -1;
+	for (int i = 0; i < opcodes.length; ++i)
+	    switch (opcodes[i])
+		{
+		case FlatEvaluator.CONSTANT:
+		    stack[++top] = constants[i];
+		    break;
+		case FlatEvaluator.VARIABLE:
+		    stack[++top] = x;
+		    break;
+		case FlatEvaluator.STORE:
+		    stack[maxDepth + slots[i]] = stack[top];
+		    break;
+		case FlatEvaluator.LOAD:
+		    stack[++top] = stack[maxDepth + slots[i]];
+		    break;
+		case FlatEvaluator.ADD:
+		    --top;
+		    stack[top] = stack[top].add (stack[top + 1]);
+		    break;
+		case FlatEvaluator.SUBTRACT:
+		    --top;
+		    stack[top] = stack[top].subtract (stack[top + 1]);
+		    break;
+		case FlatEvaluator.MULTIPLY:
+		    --top;
+		    stack[top] = stack[top].multiply (stack[top + 1]);
+		    break;
+		case FlatEvaluator.DIVIDE:
+		    --top;
+		    stack[top] = stack[top].divide (stack[top + 1]);
+		    break;
+		case FlatEvaluator.POWER:
+		    --top;
+		    stack[top] = stack[top].power (stack[top + 1]);
+		    break;
+		default:
+		    stack[top] = stack[top].apply (functions[i]);
+		    break;
+		}
+
+	return stack[0];
+    }
+
+    // The values over [from, to]. A piece is split until it cannot widen
+    // the range found so far by more than tolerance times that range's
+    // width, or is maxDepth splits deep, so the result holds the exact
+    // range and overshoots it by little more than tolerance.
+    public Interval bound (final double from,
+			   final double to,
+			   final int maxDepth,
+			   final double tolerance)
+    {
+	// Points give a range the answer must contain
+	final Interval seen[] = { Interval.EMPTY };
+	for (int i = 0; i < SAMPLES; ++i)
+	    seen[0] = seen[0].union (at (from + (to - from) * i / (SAMPLES - 1)));
+
+	return bound (from, to, 0, maxDepth, tolerance, seen);
+    }
+
+    private Interval bound (final double from,
+			    final double to,
+			    final int depth,
+			    final int maxDepth,
+			    final double tolerance,
+			    final Interval seen[])
+    {
+	final Interval range = evaluate (Interval.of (Math.min (from, to), Math.max (from, to)));
+	if (range.isEmpty () || depth == maxDepth)
+	    return range;
+	else if (seen[0].isBounded ())
+	    {
+		final double slack = tolerance * Math.max (seen[0].getWidth (), Double.MIN_NORMAL);
+		if (range.getLo () >= seen[0].getLo () - slack && range.getHi () <= seen[0].getHi () + slack)
+		    return range;
+	    }
+
+	final double middle = (from + to) / 2;
+	seen[0] = seen[0].union (at (middle));
+	return bound (from, middle, depth + 1, maxDepth, tolerance, seen)
+	    .union (bound (middle, to, depth + 1, maxDepth, tolerance, seen));
+    }
+
+    // A tight enclosure of the value at one point, EMPTY if undefined
+    private Interval at (final double x)
+    {
+	final Interval value = evaluate (Interval.of (x));
+	return value.isBounded () ? value : Interval.EMPTY;
+    }
+
+    private static final class Program extends Emitter
+    {
+	final List<Integer> opcodes = new ArrayList<> ();
+	final List<Interval> constants = new ArrayList<> ();
+	final List<String> functions = new ArrayList<> ();
+	final List<Integer> slots = new ArrayList<> ();
+	int depth = 0;
+	int maxDepth = 0;
+	int slotCount = 0;
+
+	void number (final double value)
+	{
+	    add (FlatEvaluator.CONSTANT, Interval.of (value), null, 0);
+	    push ();
+	}
+
+	void name (final String name)
+	{
+	    if (name.equals (Builtins.PI))
+		add (FlatEvaluator.CONSTANT, Interval.of (Math.nextDown (Math.PI), Math.nextUp (Math.PI)),
+		     null, 0);
+	    else
+		add (FlatEvaluator.VARIABLE, null, null, 0);
+	    push ();
+	}
+
+	void operator (final String operator, final int arity)
+	    throws CompileError
+	{
+	    add (FlatEvaluator.opcode (operator, arity), null, operator, 0);
+	    depth -= arity - 1;
+	}
+
+	void store (final int slot)
+	{
+	    add (FlatEvaluator.STORE, null, null, slot);
+	}
+
+	void load (final int slot)
+	{
+	    add (FlatEvaluator.LOAD, null, null, slot);
+	    push ();
+	}
+
+	private void add (final int opcode,
+			  final Interval constant,
+			  final String function,
+			  final int slot)
+	{
+	    opcodes.add (opcode);
+	    constants.add (constant);
+	    functions.add (function);
+	    slots.add (slot);
+	}
+
+	private void push ()
+	{
+	    maxDepth = Math.max (maxDepth, ++depth);
+	}
+    }
+}
@@ -0,0 +1,217 @@
+package Evaluator;
+
+import Parser.Expression;
+
+import java.io.ByteArrayOutputStream;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.MethodType;
+import java.util.Map;
+import java.util.function.DoubleUnaryOperator;
+
+// Compiles an Expression into a hidden class implementing DoubleUnaryOperator.
+// Calls to other user functions are inlined first, so the generated
+// applyAsDouble is straight-line bytecode the JIT can inline into its callers.
+public final class KernelCompiler extends Emitter
+{
+    private static final String KERNEL_NAME = "Evaluator/Kernel";
+    private static final String OBJECT = "java/lang/Object";
+    private static final String OPERATOR = "java/util/function/DoubleUnaryOperator";
+    private static final String MATH = "java/lang/Math";
+
+    private static final int MAX_CODE_LENGTH = 65535;
+    private static final int MAX_STACK = 65535;
+    private static final int MAX_LOCALS = 65535;
+    // this, then x, then the slots; every double takes two locals
+    private static final int FIRST_SLOT = 3;
+
+    private static final int DCONST_0 = 0x0e;
+    private static final int DCONST_1 = 0x0f;
+    private static final int LDC2_W = 0x14;
+    private static final int DLOAD = 0x18;
+    private static final int DLOAD_1 = 0x27;
+    private static final int DSTORE = 0x39;
+    private static final int ALOAD_0 = 0x2a;
+    private static final int DADD = 0x63;
+    private static final int DSUB = 0x67;
+    private static final int DMUL = 0x6b;
+    private static final int DDIV = 0x6f;
+    private static final int DUP2 = 0x5c;
+    private static final int DNEG = 0x77;
+    private static final int DRETURN = 0xaf;
+    private static final int RETURN = 0xb1;
+    private static final int INVOKESPECIAL = 0xb7;
+    private static final int INVOKESTATIC = 0xb8;
+    private static final int WIDE = 0xc4;
+
+    private final ClassFile classFile;
+    private final ByteArrayOutputStream code;
+    private int depth;
+    private int maxDepth;
+
+    private KernelCompiler ()
+    {
+	classFile = new ClassFile (KERNEL_NAME, OBJECT, OPERATOR);
+	code = new ByteArrayOutputStream ();
+	depth = maxDepth = 0;
+    }
+
+    public static DoubleUnaryOperator compile (final Expression exp,
+					       final Map<String, Expression> definitions)
+	throws CompileError
+    {
+	return new KernelCompiler ()
+	    .define (Optimizer.optimize (Inliner.inline (exp, definitions)));
+    }
+
+    private DoubleUnaryOperator define (final Expression exp)
+	throws CompileError
+    {
+	final byte constructor[] =
+	    {
+		(byte) ALOAD_0,
+		(byte) INVOKESPECIAL, 0, 0,
+		(byte) RETURN
+	    };
+	final int objectInit = classFile.methodRef (OBJECT, "<init>", "()V");
+	constructor[2] = (byte) (objectInit >>> 8);
+	constructor[3] = (byte) objectInit;
+	classFile.addMethod (ClassFile.ACC_PUBLIC, "<init>", "()V", 1, 1, constructor);
+
+	final int locals = FIRST_SLOT + 2 * emit (exp);
+	code.write (DRETURN);
+	if (code.size () > MAX_CODE_LENGTH || maxDepth > MAX_STACK || locals > MAX_LOCALS)
+	    throw new CompileError ("Expression is too large to compile.");
+
+	classFile.addMethod (ClassFile.ACC_PUBLIC | ClassFile.ACC_FINAL,
+			     "applyAsDouble", "(D)D",
+			     maxDepth, locals, code.toByteArray ());
+
+	try
+	    {
+		final MethodHandles.Lookup kernel = MethodHandles.lookup ()
+		    .defineHiddenClass (classFile.toByteArray (), true);
+		return (DoubleUnaryOperator) kernel
+		    .findConstructor (kernel.lookupClass (),
+				      MethodType.methodType (void.class))
+		    .invoke ();
+	    }
+	catch (final Throwable t)
+	    {
+		throw new CompileError ("Unable to load compiled expression: "
+					+ t.getMessage (), t);
+	    }
+    }
+
+    void number (final double value)
+    {
+	pushConstant (value);
+    }
+
+    void name (final String name)
+    {
+	if (name.equals (Builtins.VARIABLE))
+	    {
+		code.write (DLOAD_1);
+		push ();
+	    }
+	else
+	    pushConstant (Math.PI);
+    }
+
+    void operator (final String op, final int arity)
+	throws CompileError
+    {
+	if (arity == 1)
+	    {
+		if (op.equals ("-"))
+		    code.write (DNEG);
+		else
+		    invokeMath (op, "(D)D");
+		return;
+	    }
+
+	switch (op)
+	    {
+	    case "+":
+		code.write (DADD);
+		break;
+	    case "-":
+		code.write (DSUB);
+		break;
+	    case "*":
+		code.write (DMUL);
+		break;
+	    case "/":
+		code.write (DDIV);
+		break;
+	    case "^":
+		invokeMath ("pow", "(DD)D");
+		break;
+	    default:
+		throw new CompileError ("Unknown operator " + op);
+	    }
+	pop ();
+    }
+
+    void store (final int slot)
+    {
+	code.write (DUP2);
+	push ();
+	local (DSTORE, slot);
+	pop ();
+    }
+
+    void load (final int slot)
+    {
+	local (DLOAD, slot);
+	push ();
+    }
+
+    private void local (final int opcode, final int slot)
+    {
+	final int index = FIRST_SLOT + 2 * slot;
+	if (index > 0xff)
+	    {
+		code.write (WIDE);
+		code.write (opcode);
+		ClassFile.u2 (code, index);
+	    }
+	else
+	    {
+		code.write (opcode);
+		code.write (index);
+	    }
+    }
+
+    private void pushConstant (final double value)
+    {
+	if (Double.doubleToRawLongBits (value) == 0L)
+	    code.write (DCONST_0);
+	else if (value == 1.0)
+	    code.write (DCONST_1);
+	else
+	    {
+		code.write (LDC2_W);
+		ClassFile.u2 (code, classFile.doubleConstant (value));
+	    }
+	push ();
+    }
+
+    private void invokeMath (final String method, final String descriptor)
+    {
+	code.write (INVOKESTATIC);
+	ClassFile.u2 (code, classFile.methodRef (MATH, method, descriptor));
+    }
+
+    // Every value on the operand stack is a double, which takes two slots
+    private void push ()
+    {
+	depth += 2;
+	maxDepth = Math.max (maxDepth, depth);
+    }
+
+    private void pop ()
+    {
+	depth -= 2;
+    }
+}
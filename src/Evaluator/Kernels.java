@@ -0,0 +1,10 @@
+package Evaluator;
+
+// Element-wise operations over blocks of samples, used by BatchEvaluator.
+// Binary operations store their result in the first operand.
+interface Kernels
+{
+    void unary (int opcode, double a[], int n);
+
+    void binary (int opcode, double a[], double b[], int n);
+}
@@ -0,0 +1,218 @@
+package Evaluator;
+
+import Parser.Expression;
+import Parser.Fold;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.ArrayDeque;
+
+// Shrinks an Expression before it is evaluated: folds constant sub-trees,
+// drops identities (x*1, x+0, x^1, 0*x, ...) and gathers chains of + and *
+// into one constant and a canonically ordered list of other terms, so equal
+// sums and products come out as equal trees. Calls to user functions are
+// left in place, so this can run before or after inlining. A whole chain
+// of + or * is gathered at once, and none of the passes recurse, so long
+// sums cost time linear in their length and no Java stack.
+public final class Optimizer extends Fold<Expression, RuntimeException>
+{
+    private static final Comparator<Expression> CANONICAL = Optimizer::compare;
+
+    private Optimizer ()
+    {
+    }
+
+    public static Expression optimize (final Expression exp)
+    {
+	return new Optimizer ().apply (exp);
+    }
+
+    protected Expression leaf (final Expression exp)
+    {
+	if (exp.getType () == Expression.Type.NAME && exp.getName ().equals (Builtins.PI))
+	    return new Expression (Math.PI);
+	return exp;
+    }
+
+    // The terms of a chain of + or *, so the links inside the chain are
+    // not each optimized and gathered on their own
+    protected List<Expression> children (final Expression exp)
+    {
+	if (isOperator (exp, "+", 2) || isOperator (exp, "*", 2))
+	    {
+		final List<Expression> terms = new ArrayList<> ();
+		flatten (exp.getOperator (), exp, terms);
+		return terms;
+	    }
+	return exp.getOperands ();
+    }
+
+    protected Expression node (final Expression exp, final List<Expression> operands)
+    {
+	final String op = exp.getOperator ();
+	boolean constant = Builtins.isOperator (op) || Builtins.isFunction (op);
+	for (final Expression operand: operands)
+	    constant &= operand.getType () == Expression.Type.NUMBER;
+
+	if (constant && operands.size () == 1)
+	    return new Expression (Builtins.apply (op, operands.get (0).getNumber ()));
+	else if (constant && operands.size () == 2)
+	    return new Expression (Builtins.apply (op,
+						   operands.get (0).getNumber (),
+						   operands.get (1).getNumber ()));
+
+	if (isOperator (exp, "+", 2) || isOperator (exp, "*", 2))
+	    return gather (op, operands);
+	else if (operands.size () == 1 && op.equals ("-"))
+	    {
+		final Expression operand = operands.get (0);
+		if (isOperator (operand, "-", 1))
+		    return operand.getNthOperand (0);
+	    }
+	else if (operands.size () == 2)
+	    {
+		final Expression left = operands.get (0);
+		final Expression right = operands.get (1);
+		switch (op)
+		    {
+		    case "-":
+			if (isNumber (right, 0))
+			    return left;
+			else if (isNumber (left, 0))
+			    return negate (right);
+			break;
+		    case "/":
+			if (isNumber (right, 1))
+			    return left;
+			break;
+		    case "^":
+			if (isNumber (right, 1))
+			    return left;
+			else if (isNumber (right, 0))
+			    return new Expression (1.0);
+			break;
+		    }
+	    }
+
+	return new Expression (op, operands);
+    }
+
+    // -exp, for an exp that is already optimized
+    private static Expression negate (final Expression exp)
+    {
+	if (exp.getType () == Expression.Type.NUMBER)
+	    return new Expression (-exp.getNumber ());
+	else if (isOperator (exp, "-", 1))
+	    return exp.getNthOperand (0);
+	return new Expression ("-", exp);
+    }
+
+    // Flattens a chain of + or * into its terms, combines the numbers and
+    // rebuilds the chain with the constant first and the rest sorted
+    private static Expression gather (final String op, final List<Expression> operands)
+    {
+	final boolean sum = op.equals ("+");
+	final List<Expression> terms = new ArrayList<> ();
+	for (final Expression operand: operands)
+	    flatten (op, operand, terms);
+
+	double constant = sum ? 0 : 1;
+	final List<Expression> rest = new ArrayList<> ();
+	for (final Expression term: terms)
+	    if (term.getType () == Expression.Type.NUMBER)
+		constant = sum ? constant + term.getNumber () : constant * term.getNumber ();
+	    else
+		rest.add (term);
+
+	if (!sum && constant == 0)
+	    return new Expression (0.0);
+	else if (rest.isEmpty ())
+	    return new Expression (constant);
+
+	rest.sort (CANONICAL);
+	if (constant != (sum ? 0 : 1))
+	    rest.add (0, new Expression (constant));
+
+	Expression result = rest.get (0);
+	for (int i = 1; i < rest.size (); ++i)
+	    result = new Expression (op, result, rest.get (i));
+
+	return result;
+    }
+
+    private static void flatten (final String op,
+				 final Expression exp,
+				 final List<Expression> terms)
+    {
+	final Deque<Expression> pending = new ArrayDeque<> ();
+	pending.push (exp);
+	while (!pending.isEmpty ())
+	    {
+		final Expression next = pending.pop ();
+		if (isOperator (next, op, 2))
+		    {
+			pending.push (next.getNthOperand (1));
+			pending.push (next.getNthOperand (0));
+		    }
+		else
+		    terms.add (next);
+	    }
+    }
+
+    private static boolean isNumber (final Expression exp, final double value)
+    {
+	return exp.getType () == Expression.Type.NUMBER && exp.getNumber () == value;
+    }
+
+    private static boolean isOperator (final Expression exp,
+				       final String op,
+				       final int arity)
+    {
+	return exp.getType () == Expression.Type.OPERATOR
+	    && exp.getOperator ().equals (op)
+	    && exp.getArity () == arity;
+    }
+
+    // Numbers before names before operators; then by value, name, or
+    // operator, arity and operands
+    static int compare (final Expression a, final Expression b)
+    {
+	// Pairs still to compare, the next one on top
+	final Deque<Expression[]> pending = new ArrayDeque<> ();
+	pending.push (new Expression[] { a, b });
+	while (!pending.isEmpty ())
+	    {
+		final Expression pair[] = pending.pop ();
+		final Expression left = pair[0];
+		final Expression right = pair[1];
+		if (left == right)
+		    continue;
+		else if (left.getType () != right.getType ())
+		    return left.getType ().compareTo (right.getType ());
+
+		int result;
+		switch (left.getType ())
+		    {
+		    case NUMBER:
+			result = Double.compare (left.getNumber (), right.getNumber ());
+			break;
+		    case NAME:
+			result = left.getName ().compareTo (right.getName ());
+			break;
+		    default:
+			result = left.getOperator ().compareTo (right.getOperator ());
+			if (result == 0)
+			    result = Integer.compare (left.getArity (), right.getArity ());
+			for (int i = left.getArity () - 1; result == 0 && i >= 0; --i)
+			    pending.push (new Expression[] { left.getNthOperand (i), right.getNthOperand (i) });
+			break;
+		    }
+		if (result != 0)
+		    return result;
+	    }
+
+	return 0;
+    }
+}
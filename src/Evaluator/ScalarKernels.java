@@ -0,0 +1,93 @@
+package Evaluator;
+
+final class ScalarKernels implements Kernels
+{
+    public void unary (final int opcode, final double a[], final int n)
+    {
+	unary (opcode, a, 0, n);
+    }
+
+    public void binary (final int opcode, final double a[], final double b[], final int n)
+    {
+	binary (opcode, a, b, 0, n);
+    }
+
+    // Also used for the tail that does not fill a whole vector
+    static void unary (final int opcode, final double a[], final int from, final int to)
+    {
+	switch (opcode)
+	    {
+	    case FlatEvaluator.NEGATE:
+		for (int i = from; i < to; ++i)
+		    a[i] = -a[i];
+		break;
+	    case FlatEvaluator.SIN:
+		for (int i = from; i < to; ++i)
+		    a[i] = Math.sin (a[i]);
+		break;
+	    case FlatEvaluator.COS:
+		for (int i = from; i < to; ++i)
+		    a[i] = Math.cos (a[i]);
+		break;
+	    case FlatEvaluator.TAN:
+		for (int i = from; i < to; ++i)
+		    a[i] = Math.tan (a[i]);
+		break;
+	    case FlatEvaluator.LOG:
+		for (int i = from; i < to; ++i)
+		    a[i] = Math.log (a[i]);
+		break;
+	    case FlatEvaluator.ATAN:
+		for (int i = from; i < to; ++i)
+		    a[i] = Math.atan (a[i]);
+		break;
+	    case FlatEvaluator.ACOS:
+		for (int i = from; i < to; ++i)
+		    a[i] = Math.acos (a[i]);
+		break;
+	    case FlatEvaluator.ASIN:
+		for (int i = from; i < to; ++i)
+		    a[i] = Math.asin (a[i]);
+		break;
+	    case FlatEvaluator.EXP:
+		for (int i = from; i < to; ++i)
+		    a[i] = Math.exp (a[i]);
+		break;
+	    default:
+		throw new IllegalStateException ("Unknown opcode " + opcode);
+	    }
+    }
+
+    static void binary (final int opcode,
+			final double a[],
+			final double b[],
+			final int from,
+			final int to)
+    {
+	switch (opcode)
+	    {
+	    case FlatEvaluator.ADD:
+		for (int i = from; i < to; ++i)
+		    a[i] += b[i];
+		break;
+	    case FlatEvaluator.SUBTRACT:
+		for (int i = from; i < to; ++i)
+		    a[i] -= b[i];
+		break;
+	    case FlatEvaluator.MULTIPLY:
+		for (int i = from; i < to; ++i)
+		    a[i] *= b[i];
+		break;
+	    case FlatEvaluator.DIVIDE:
+		for (int i = from; i < to; ++i)
+		    a[i] /= b[i];
+		break;
+	    case FlatEvaluator.POWER:
+		for (int i = from; i < to; ++i)
+		    a[i] = Math.pow (a[i], b[i]);
+		break;
+	    default:
+		throw new IllegalStateException ("Unknown opcode " + opcode);
+	    }
+    }
+}
@@ -0,0 +1,88 @@
+package Evaluator;
+
+import jdk.incubator.vector.DoubleVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+// Only loaded when the jdk.incubator.vector module is present; see
+// BatchEvaluator.
+final class VectorKernels implements Kernels
+{
+    private static final VectorSpecies<Double> SPECIES = DoubleVector.SPECIES_PREFERRED;
+
+    public void unary (final int opcode, final double a[], final int n)
+    {
+	final VectorOperators.Unary op;
+	switch (opcode)
+	    {
+	    case FlatEvaluator.NEGATE:
+		op = VectorOperators.NEG;
+		break;
+	    case FlatEvaluator.SIN:
+		op = VectorOperators.SIN;
+		break;
+	    case FlatEvaluator.COS:
+		op = VectorOperators.COS;
+		break;
+	    case FlatEvaluator.TAN:
+		op = VectorOperators.TAN;
+		break;
+	    case FlatEvaluator.LOG:
+		op = VectorOperators.LOG;
+		break;
+	    case FlatEvaluator.ATAN:
+		op = VectorOperators.ATAN;
+		break;
+	    case FlatEvaluator.ACOS:
+		op = VectorOperators.ACOS;
+		break;
+	    case FlatEvaluator.ASIN:
+		op = VectorOperators.ASIN;
+		break;
+	    case FlatEvaluator.EXP:
+		op = VectorOperators.EXP;
+		break;
+	    default:
+		throw new IllegalStateException ("Unknown opcode " + opcode);
+	    }
+
+	final int bound = SPECIES.loopBound (n);
+	for (int i = 0; i < bound; i += SPECIES.length ())
+	    DoubleVector.fromArray (SPECIES, a, i).lanewise (op).intoArray (a, i);
+
+	ScalarKernels.unary (opcode, a, bound, n);
+    }
+
+    public void binary (final int opcode, final double a[], final double b[], final int n)
+    {
+	final VectorOperators.Binary op;
+	switch (opcode)
+	    {
+	    case FlatEvaluator.ADD:
+		op = VectorOperators.ADD;
+		break;
+	    case FlatEvaluator.SUBTRACT:
+		op = VectorOperators.SUB;
+		break;
+	    case FlatEvaluator.MULTIPLY:
+		op = VectorOperators.MUL;
+		break;
+	    case FlatEvaluator.DIVIDE:
+		op = VectorOperators.DIV;
+		break;
+	    case FlatEvaluator.POWER:
+		op = VectorOperators.POW;
+		break;
+	    default:
+		throw new IllegalStateException ("Unknown opcode " + opcode);
+	    }
+
+	final int bound = SPECIES.loopBound (n);
+	for (int i = 0; i < bound; i += SPECIES.length ())
+	    DoubleVector.fromArray (SPECIES, a, i)
+		.lanewise (op, DoubleVector.fromArray (SPECIES, b, i))
+		.intoArray (a, i);
+
+	ScalarKernels.binary (opcode, a, b, bound, n);
+    }
+}
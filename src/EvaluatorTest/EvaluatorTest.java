@@ -0,0 +1,132 @@
+package EvaluatorTest;
+import Parser.ExpressionStream;
+import Parser.Expression;
+import Lexer.TokenStream;
+import Parser.ParseError;
+import Evaluator.BatchEvaluator;
+import Evaluator.CompileError;
+import Evaluator.Differentiator;
+import Evaluator.FlatEvaluator;
+import Evaluator.KernelCompiler;
+import Evaluator.Builtins;
+import Evaluator.Inliner;
+import Parser.Fold;
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.List;
+import java.util.function.DoubleUnaryOperator;
+
+// Compares the scalar, compiled and batch evaluators, which all run the
+// Optimizer, against a plain walk of the unoptimized expression for every
+// expression read from standard input, and the symbolic derivative against
+// central differences.
+public class EvaluatorTest
+{
+    private static final int SAMPLES = 10007;
+    private static final double TOLERANCE = 1e-12;
+    private static final double STEP = 1e-5;
+    private static final double DIFFERENCE_TOLERANCE = 1e-5;
+
+    public static void main (final String args[])
+	throws ParseError, CompileError, IOException
+    {
+	System.out.println ("Vectorized: " + BatchEvaluator.isVectorized ());
+
+	TokenStream tok = new TokenStream (System.in);
+	ExpressionStream in = new ExpressionStream (tok);
+	for (;;)
+	    {
+		final Expression exp = in.read ();
+		final Expression inlined = Inliner.inline (exp, new HashMap<> ());
+		final FlatEvaluator scalar = FlatEvaluator.compile (exp, new HashMap<> ());
+		final DoubleUnaryOperator kernel = KernelCompiler.compile (exp, new HashMap<> ());
+		final BatchEvaluator batch = new BatchEvaluator (scalar);
+
+		final double xs[] = new double[SAMPLES];
+		final double results[] = new double[SAMPLES];
+		for (int i = 0; i < SAMPLES; ++i)
+		    xs[i] = -10 + 20.0 * i / (SAMPLES - 1);
+		batch.evaluate (xs, results);
+
+		double scalarError = 0, kernelError = 0, batchError = 0;
+		for (int i = 0; i < SAMPLES; ++i)
+		    {
+			final double expected = reference (inlined, xs[i]);
+			scalarError = Math.max (scalarError,
+						error (expected, scalar.applyAsDouble (xs[i])));
+			kernelError = Math.max (kernelError,
+						error (expected, kernel.applyAsDouble (xs[i])));
+			batchError = Math.max (batchError, error (expected, results[i]));
+		    }
+
+		final Expression derivative = Differentiator.derivative (exp, "x");
+		final FlatEvaluator slope = FlatEvaluator.compile (derivative, new HashMap<> ());
+		double derivativeError = 0;
+		for (int i = 0; i < SAMPLES; ++i)
+		    {
+			final double difference = (scalar.applyAsDouble (xs[i] + STEP)
+						   - scalar.applyAsDouble (xs[i] - STEP)) / (2 * STEP);
+			final double coarse = (scalar.applyAsDouble (xs[i] + 2 * STEP)
+					       - scalar.applyAsDouble (xs[i] - 2 * STEP)) / (4 * STEP);
+			// Skip points next to poles and edges of the domain, and
+			// wherever the difference's own error, about a third of its
+			// distance from the one with twice the step, is not well
+			// within the tolerance
+			if (!Double.isNaN (difference) && !Double.isInfinite (difference)
+			    && Math.abs (difference) < 1e6
+			    && error (coarse, difference) < DIFFERENCE_TOLERANCE)
+			    derivativeError = Math.max (derivativeError,
+							error (difference, slope.applyAsDouble (xs[i])));
+		    }
+
+		System.out.println (exp);
+		System.out.println ("  scalar:   " + verdict (scalarError));
+		System.out.println ("  compiled: " + verdict (kernelError));
+		System.out.println ("  batch:    " + verdict (batchError));
+		System.out.println ("  d/dx " + derivative + ": "
+				    + verdict (derivativeError, DIFFERENCE_TOLERANCE));
+	    }
+    }
+
+    // The value of an inlined expression at x, computed node by node as
+    // written, without any of the Optimizer's rewriting
+    private static double reference (final Expression inlined, final double x)
+    {
+	return new Fold<Double, RuntimeException> ()
+	    {
+		protected Double leaf (final Expression exp)
+		{
+		    if (exp.getType () == Expression.Type.NUMBER)
+			return exp.getNumber ();
+		    return exp.getName ().equals (Builtins.PI) ? Math.PI : x;
+		}
+
+		protected Double node (final Expression exp, final List<Double> operands)
+		{
+		    if (operands.size () == 1)
+			return Builtins.apply (exp.getOperator (), operands.get (0));
+		    return Builtins.apply (exp.getOperator (), operands.get (0), operands.get (1));
+		}
+	    }.apply (inlined);
+    }
+
+    private static double error (final double expected, final double actual)
+    {
+	if (Double.isNaN (expected) || Double.isNaN (actual))
+	    return Double.isNaN (expected) == Double.isNaN (actual) ? 0 : Double.POSITIVE_INFINITY;
+	else if (expected == actual)
+	    return 0;
+
+	return Math.abs (expected - actual) / Math.max (1, Math.abs (expected));
+    }
+
+    private static String verdict (final double error)
+    {
+	return verdict (error, TOLERANCE);
+    }
+
+    private static String verdict (final double error, final double tolerance)
+    {
+	return (error <= tolerance ? "ok" : "MISMATCH") + " (max relative error " + error + ")";
+    }
+}
@@ -0,0 +1,146 @@
+package FunctionRotator;
+
+import GNUPlot.Batch;
+import Geometry.Mesh;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Map;
+
+// The frames of an animated rotate (), all cut from the full solids that
+// Renderer sampled once. Sweeping the revolution draws each solid from
+// v = 0 up to the frame's angle; sweeping the view sends the full meshes
+// with the first frame only, after which a frame just turns the camera and
+// has gnuplot redraw the data it already read.
+//
+// For the revolution sweep each solid is copied once, column by column, so
+// that the columns up to any angle are a prefix of the copy. A frame then
+// only writes its closing column just past that prefix, and sends the
+// prefix: nothing is allocated or copied per frame but that one column.
+public final class Animation
+{
+    public enum Sweep
+    {
+	REVOLUTION, VIEW
+    }
+
+    private static final double TWO_PI = 2 * Math.PI;
+    private static final double VIEW_ELEVATION = 60;
+
+    private final List<Mesh> solids;
+    private final double axes[];
+    // Per solid: its vertices column by column, and the column a frame
+    // overwrote with its closing column, or -1
+    private final List<double[]> columns;
+    private final int patched[];
+    // Reused by every revolution frame
+    private final int lengths[];
+    private final StringBuilder command;
+    // Whether gnuplot has the full meshes of the view sweep
+    private boolean drawn;
+
+    // Axes are looked up by solid title
+    Animation (final List<Mesh> solids, final Map<String, Double> axes)
+    {
+	this.solids = solids;
+	this.axes = new double[solids.size ()];
+	columns = new ArrayList<> ();
+	for (final Mesh solid: solids)
+	    {
+		this.axes[columns.size ()] = axes.get (solid.getTitle ());
+		columns.add (transpose (solid));
+	    }
+	patched = new int[solids.size ()];
+	Arrays.fill (patched, -1);
+	lengths = new int[solids.size ()];
+	command = new StringBuilder ();
+    }
+
+    // Adds the frame at angle, in [0, 2pi), to batch. The batch must be
+    // committed before the next frame.
+    void frame (final Sweep sweep, final double angle, final Batch batch)
+    {
+	switch (sweep)
+	    {
+	    case REVOLUTION:
+		command.setLength (0);
+		command.append ("splot");
+		for (int i = 0; i < solids.size (); ++i)
+		    {
+			final Mesh solid = solids.get (i);
+			final int count = sweep (i, angle);
+			lengths[i] = 3 * solid.getUCount () * count;
+			command.append (" ")
+			    .append (Renderer.splotSource (solid.getTitle (), solid.getUCount (), count))
+			    .append (",");
+		    }
+		// The binary data must start right after the command's newline
+		command.setLength (command.length () - 1);
+		batch.add (command.toString (), columns, lengths);
+		break;
+	    case VIEW:
+		batch.set ("view", String.format ("%f,%f", VIEW_ELEVATION, Math.toDegrees (angle)));
+		if (drawn)
+		    batch.add ("refresh");
+		else
+		    Renderer.splot (solids, batch);
+		drawn = true;
+		break;
+	    }
+    }
+
+    // Prepares the columns of solid i from v = 0 to v = angle, returning
+    // how many there are
+    private int sweep (final int i, final double angle)
+    {
+	// A surface needs two columns, so the sweep starts slightly open
+	final Mesh solid = solids.get (i);
+	final int uCount = solid.getUCount ();
+	final int vCount = solid.getVCount ();
+	final double step = TWO_PI / (vCount - 1);
+	final double end = Math.max (angle, step / 4);
+	final int whole = Math.min ((int) (end / step) + 1, vCount);
+	final boolean closing = whole < vCount && end - (whole - 1) * step > 1e-9;
+
+	final double from[] = solid.getVertices ();
+	final double to[] = columns.get (i);
+	if (patched[i] >= 0)
+	    {
+		copyColumn (solid, patched[i], to);
+		patched[i] = -1;
+	    }
+	if (!closing)
+	    return whole;
+
+	final double cos = Math.cos (end), sin = Math.sin (end);
+	for (int u = 0; u < uCount; ++u)
+	    {
+		// At v = 0 a vertex is (u, c + r, 0), so the rest follows
+		final int first = solid.index (u, 0);
+		final int last = 3 * (whole * uCount + u);
+		final double radius = from[first + 1] - axes[i];
+		to[last] = from[first];
+		to[last + 1] = radius * cos + axes[i];
+		to[last + 2] = radius * sin;
+	    }
+	patched[i] = whole;
+	return whole + 1;
+    }
+
+    private static double[] transpose (final Mesh solid)
+    {
+	final double to[] = new double[solid.getVertices ().length];
+	for (int v = 0; v < solid.getVCount (); ++v)
+	    copyColumn (solid, v, to);
+	return to;
+    }
+
+    private static void copyColumn (final Mesh solid, final int v, final double to[])
+    {
+	final double from[] = solid.getVertices ();
+	final int uCount = solid.getUCount ();
+	for (int u = 0; u < uCount; ++u)
+	    System.arraycopy (from, solid.index (u, v), to, 3 * (v * uCount + u), 3);
+    }
+}
@@ -0,0 +1,162 @@
+package FunctionRotator;
+
+import GNUPlot.GNUPlot;
+import GNUPlot.Batch;
+
+import java.awt.EventQueue;
+import java.io.IOException;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+// Plays an Animation at a target frame rate. The angle of each frame comes
+// from the clock, one sweep every period, so when gnuplot falls behind
+// frames are dropped rather than queued: a frame is skipped whenever
+// gnuplot still has MAX_IN_FLIGHT earlier frames to acknowledge. Once
+// stop () returns nothing more of the stopped animation reaches gnuplot,
+// so it cannot draw over a plot requested right after.
+public final class Animator
+{
+    private static final int MAX_IN_FLIGHT = 2;
+
+    private final Renderer renderer;
+    private final GNUPlot gnuplot;
+    private final Consumer<String> onError;
+    private final ScheduledExecutorService clock;
+    // Only touched by the clock thread
+    private final Batch batch;
+
+    // Guarded by this. Every start and stop begins a new generation, and a
+    // tick only commits while its own is current.
+    private ScheduledFuture<?> ticks;
+    private long generation;
+    private long shown;
+    private long dropped;
+
+    public Animator (final Renderer renderer,
+		     final GNUPlot gnuplot,
+		     final Consumer<String> onError)
+    {
+	this.renderer = renderer;
+	this.gnuplot = gnuplot;
+	this.onError = onError;
+	batch = new Batch ();
+	clock = Executors.newSingleThreadScheduledExecutor (task -> {
+		final Thread thread = new Thread (task, "animation");
+		thread.setDaemon (true);
+		return thread;
+	    });
+    }
+
+    // Samples the solids of spec once, then sweeps them until stopped
+    public synchronized void start (final PlotSpec spec,
+				    final Animation.Sweep sweep,
+				    final double framesPerSecond,
+				    final double period)
+    {
+	stop ();
+	shown = dropped = 0;
+
+	final long current = ++generation;
+	final long frameNanos = (long) (1e9 / framesPerSecond);
+	final long periodNanos = (long) (period * 1e9);
+	ticks = clock.scheduleAtFixedRate (new Runnable ()
+	    {
+		private Animation animation;
+		private long start;
+
+		public void run ()
+		{
+		    try
+			{
+			    if (animation == null)
+				{
+				    batch.clear ();
+				    animation = renderer.animation (spec, batch);
+				    if (!commit (current))
+					return;
+				    start = System.nanoTime ();
+				}
+
+			    tick (current, animation, sweep,
+				  (System.nanoTime () - start) % periodNanos, periodNanos);
+			}
+		    catch (final Exception e)
+			{
+			    stopAndReport (e.getMessage ());
+			}
+		}
+	    }, 0, frameNanos, TimeUnit.NANOSECONDS);
+    }
+
+    // Waits for a frame being written to gnuplot, but not for one being
+    // prepared, which is discarded
+    public synchronized void stop ()
+    {
+	if (ticks != null)
+	    ticks.cancel (false);
+	ticks = null;
+	++generation;
+    }
+
+    public synchronized boolean isRunning ()
+    {
+	return ticks != null;
+    }
+
+    public synchronized long getShownFrames ()
+    {
+	return shown;
+    }
+
+    public synchronized long getDroppedFrames ()
+    {
+	return dropped;
+    }
+
+    private void tick (final long current,
+		       final Animation animation,
+		       final Animation.Sweep sweep,
+		       final long elapsed,
+		       final long periodNanos)
+	throws Exception
+    {
+	if (gnuplot.getPendingAcknowledgements () >= MAX_IN_FLIGHT)
+	    {
+		synchronized (this)
+		    {
+			++dropped;
+		    }
+		return;
+	    }
+
+	batch.clear ();
+	animation.frame (sweep, 2 * Math.PI * elapsed / periodNanos, batch);
+	if (!commit (current))
+	    return;
+	synchronized (this)
+	    {
+		++shown;
+	    }
+    }
+
+    // Commits batch if generation is still current. Holding the lock
+    // while writing is what makes stop () wait for the write.
+    private synchronized boolean commit (final long current)
+	throws IOException
+    {
+	if (current != generation)
+	    return false;
+
+	gnuplot.commit (batch);
+	return true;
+    }
+
+    private void stopAndReport (final String message)
+    {
+	stop ();
+	EventQueue.invokeLater (() -> onError.accept (message));
+    }
+}
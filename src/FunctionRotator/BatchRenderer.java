@@ -0,0 +1,315 @@
+package FunctionRotator;
+
+import GNUPlot.Batch;
+import GNUPlot.GNUPlotPool;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.regex.Pattern;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+// Headless mode: renders every figure of a spec file to an image file,
+// validating and sampling on a thread per gnuplot process of a pool.
+//
+//   java -jar FunctionRotator.jar --batch specs.txt --out dir/ [--jobs N]
+//
+// A spec file holds one block per figure. Blank lines and lines starting
+// with '#' are ignored; anything left out takes the window's default:
+//
+//   [name]
+//   mode = rotate           (plot or rotate)
+//   style = lines           (any style the window offers)
+//   format = png            (png or svg)
+//   terminal = pngcairo size 800,600     (png or pngcairo, or svg)
+//   x = -10:10
+//   y = -10:10              (or auto, to fit the functions)
+//   z = -10:10              (or auto)
+//   Y0 = sin(x)
+//   Y0.axis = 1
+final class BatchRenderer
+{
+    static final String USAGE =
+	"usage: java -jar FunctionRotator.jar --batch specs.txt --out dir/ [--jobs N]";
+    // The terminals each format may be written with
+    private static final Map<String, List<String>> TERMINALS =
+	Map.of ("png", List.of ("png", "pngcairo"),
+		"svg", List.of ("svg"));
+    // What may follow the terminal name: words, numbers and commas, and
+    // double-quoted font or colour names. No parentheses, so no function
+    // calls, and no ;, line breaks, backquotes or @, so no further commands
+    private static final Pattern TERMINAL_OPTIONS =
+	Pattern.compile ("([\\w .,+-]|\"[\\w .,+#-]*\")*");
+    // How long gnuplot may take to draw one figure before the job fails
+    private static final long RENDER_TIMEOUT_SECONDS = 60;
+
+    private static final class Job
+    {
+	PlotSpec spec;
+	String format;
+	String terminal;
+    }
+
+    // Returns the process exit status
+    static int run (final String args[])
+    {
+	String specFile = null, outDir = null;
+	int jobs = Runtime.getRuntime ().availableProcessors ();
+	try
+	    {
+		for (int i = 0; i < args.length; i += 2)
+		    {
+			if (i + 1 >= args.length)
+			    throw new IllegalArgumentException ("Missing value for " + args[i]);
+
+			switch (args[i])
+			    {
+			    case "--batch":
+				specFile = args[i + 1];
+				break;
+			    case "--out":
+				outDir = args[i + 1];
+				break;
+			    case "--jobs":
+				jobs = Integer.parseInt (args[i + 1]);
+				break;
+			    default:
+				throw new IllegalArgumentException ("Unknown option " + args[i]);
+			    }
+		    }
+
+		if (specFile == null || outDir == null)
+		    throw new IllegalArgumentException ("--batch and --out are required");
+	    }
+	catch (final IllegalArgumentException e)
+	    {
+		System.err.println (e.getMessage ());
+		System.err.println (USAGE);
+		return 2;
+	    }
+
+	final List<Job> specs;
+	final Path out = Paths.get (outDir);
+	try
+	    {
+		specs = readSpecs (Paths.get (specFile));
+		Files.createDirectories (out);
+	    }
+	catch (final Exception e)
+	    {
+		System.err.println (e.getMessage ());
+		return 2;
+	    }
+
+	final GNUPlotPool pool = new GNUPlotPool ("gnuplot", jobs);
+	final ExecutorService executor = Executors.newFixedThreadPool (pool.getSize ());
+	final Renderer renderer = new Renderer ();
+	final List<Future<Path>> results = new ArrayList<> ();
+	for (final Job job: specs)
+	    results.add (executor.submit (() -> render (job, renderer, pool, out)));
+
+	int failures = 0;
+	for (int i = 0; i < specs.size (); ++i)
+	    try
+		{
+		    System.out.println (results.get (i).get ());
+		}
+	    catch (final ExecutionException e)
+		{
+		    ++failures;
+		    System.err.println (specs.get (i).spec.getName () + ": "
+					+ e.getCause ().getMessage ());
+		}
+	    catch (final InterruptedException e)
+		{
+		    ++failures;
+		    Thread.currentThread ().interrupt ();
+		}
+
+	executor.shutdown ();
+	pool.close ();
+	return failures == 0 ? 0 : 1;
+    }
+
+    private static Path render (final Job job,
+				final Renderer renderer,
+				final GNUPlotPool pool,
+				final Path out)
+	throws Exception
+    {
+	final Path file = out.resolve (job.spec.getName () + "." + job.format);
+
+	// Validating and sampling do not need gnuplot, so do them before
+	// taking a process from the pool
+	final Batch batch = new Batch ();
+	batch.set ("terminal", job.terminal);
+	batch.set ("output", quote (file.toString ()));
+	renderer.render (job.spec, batch);
+	// Closes the file
+	batch.set ("output", null);
+
+	return pool.run (gnuplot ->
+	    {
+		try
+		    {
+			gnuplot.commit (batch).get (RENDER_TIMEOUT_SECONDS, TimeUnit.SECONDS);
+			return file;
+		    }
+		catch (final TimeoutException e)
+		    {
+			// Stuck; the pool replaces it for the next job
+			gnuplot.close ();
+			throw new IOException ("gnuplot did not finish " + file + " within "
+					       + RENDER_TIMEOUT_SECONDS + " seconds");
+		    }
+		catch (final InterruptedException | ExecutionException e)
+		    {
+			throw new IOException ("gnuplot did not finish " + file, e);
+		    }
+	    });
+    }
+
+    private static List<Job> readSpecs (final Path file)
+	throws Exception
+    {
+	final List<Job> jobs = new ArrayList<> ();
+	final List<String> lines = Files.readAllLines (file);
+
+	String name = null;
+	Map<String, String> values = null;
+	int start = 0;
+	for (int i = 0; i <= lines.size (); ++i)
+	    {
+		final String line = (i < lines.size ()) ? lines.get (i).trim () : "[";
+		if (line.isEmpty () || line.startsWith ("#"))
+		    continue;
+
+		if (line.startsWith ("["))
+		    {
+			if (name != null)
+			    jobs.add (makeJob (file, start, name, values));
+			if (i == lines.size ())
+			    break;
+			if (!line.endsWith ("]") || line.length () < 3)
+			    throw new Exception (file + ":" + (i + 1) + ": expected [name]");
+
+			name = line.substring (1, line.length () - 1).trim ();
+			// The name is the output file's, so it must stay in the directory
+			if (name.isEmpty () || name.contains ("/") || name.contains ("\\")
+			    || name.contains (".."))
+			    throw new Exception (file + ":" + (i + 1)
+						 + ": names may not contain /, \\ or ..");
+			values = new HashMap<> ();
+			start = i + 1;
+			continue;
+		    }
+
+		final int equals = line.indexOf ('=');
+		if (name == null || equals < 0)
+		    throw new Exception (file + ":" + (i + 1) + ": expected [name] or key = value");
+
+		values.put (line.substring (0, equals).trim (),
+			    line.substring (equals + 1).trim ());
+	    }
+
+	return jobs;
+    }
+
+    private static Job makeJob (final Path file,
+				final int line,
+				final String name,
+				final Map<String, String> values)
+	throws Exception
+    {
+	final String where = file + ":" + line + ": [" + name + "] ";
+	final Job job = new Job ();
+
+	final PlotSpec.Mode mode;
+	switch (values.getOrDefault ("mode", "plot"))
+	    {
+	    case "plot":
+		mode = PlotSpec.Mode.PLOT;
+		break;
+	    case "rotate":
+		mode = PlotSpec.Mode.ROTATE;
+		break;
+	    default:
+		throw new Exception (where + "mode must be plot or rotate");
+	    }
+
+	job.format = values.getOrDefault ("format", "png");
+	if (!job.format.equals ("png") && !job.format.equals ("svg"))
+	    throw new Exception (where + "format must be png or svg");
+	job.terminal = values.getOrDefault ("terminal",
+					    job.format.equals ("png") ? "pngcairo" : "svg");
+	// The terminal is passed to gnuplot as is, so it must not carry
+	// anything else along
+	final String terminal[] = job.terminal.split ("\\s+", 2);
+	if (!TERMINALS.get (job.format).contains (terminal[0]))
+	    throw new Exception (where + "terminal must be one of "
+				 + TERMINALS.get (job.format) + " for " + job.format);
+	if (terminal.length > 1 && !TERMINAL_OPTIONS.matcher (terminal[1]).matches ())
+	    throw new Exception (where + "terminal options may only hold words, numbers,"
+				 + " commas and double-quoted names");
+
+	final String style = values.getOrDefault ("style", "lines");
+	if (!PlotSpec.STYLES.contains (style))
+	    throw new Exception (where + "style must be one of " + PlotSpec.STYLES);
+
+	final String ranges[][] = new String[3][];
+	final String axisNames[] = {"x", "y", "z"};
+	for (int i = 0; i < axisNames.length; ++i)
+	    {
+		final String range = values.getOrDefault (axisNames[i], "-10:10");
+		// Blank bounds are computed by the Renderer
+		if (i > 0 && range.equals ("auto"))
+		    {
+			ranges[i] = new String[] {"", ""};
+			continue;
+		    }
+		// Split on the colon that is not a sign of the upper bound
+		final int colon = range.indexOf (':', 1);
+		if (colon < 0)
+		    throw new Exception (where + axisNames[i] + " must be min:max");
+		ranges[i] = new String[] {range.substring (0, colon).trim (),
+					  range.substring (colon + 1).trim ()};
+	    }
+
+	final Map<String, String> functions = new HashMap<> ();
+	final Map<String, String> axes = new HashMap<> ();
+	for (int i = 0; i < 10; ++i)
+	    {
+		final String funcName = "Y" + i;
+		if (!values.containsKey (funcName) || values.get (funcName).isEmpty ())
+		    continue;
+
+		functions.put (funcName, values.get (funcName));
+		axes.put (funcName, values.getOrDefault (funcName + ".axis", "0"));
+	    }
+	if (functions.isEmpty ())
+	    throw new Exception (where + "no functions given");
+
+	job.spec = new PlotSpec (name, mode, style,
+				 ranges[0][0], ranges[0][1],
+				 ranges[1][0], ranges[1][1],
+				 ranges[2][0], ranges[2][1],
+				 functions, axes);
+	return job;
+    }
+
+    // gnuplot single-quoted strings escape a quote by doubling it
+    private static String quote (final String text)
+    {
+	return "'" + text.replace ("'", "''") + "'";
+    }
+}
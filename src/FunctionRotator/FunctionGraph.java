@@ -0,0 +1,144 @@
+package FunctionRotator;
+
+import Parser.Expression;
+import Parser.Fold;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.TreeSet;
+import java.util.Deque;
+import java.util.ArrayDeque;
+import java.util.Collections;
+
+// Which of Y0..Y9 call which. Orders the functions so every function comes
+// after the ones it calls, rejects functions defined in terms of
+// themselves, and gives each function a key that changes exactly when it
+// or a function it calls, directly or not, is edited. Anything built from
+// a function and cached under its key is rebuilt after an edit only for
+// the edited function and the functions that depend on it.
+final class FunctionGraph
+{
+    private static final int VISITING = 1;
+    private static final int VISITED = 2;
+
+    private final Map<String, Expression> functions;
+    private final Map<String, Set<String>> calls;
+    private final List<String> order;
+    private final Map<String, String> keys;
+
+    FunctionGraph (final Map<String, Expression> functions)
+	throws Exception
+    {
+	this.functions = Collections.unmodifiableMap (new LinkedHashMap<> (functions));
+
+	calls = new HashMap<> ();
+	for (final Map.Entry<String, Expression> entry: functions.entrySet ())
+	    {
+		final Set<String> called = new TreeSet<> ();
+		collectCalls (entry.getValue (), called);
+		calls.put (entry.getKey (), called);
+	    }
+
+	order = new ArrayList<> ();
+	final Map<String, Integer> state = new HashMap<> ();
+	for (final String funcName: new TreeSet<> (functions.keySet ()))
+	    visit (funcName, state, new ArrayDeque<> ());
+
+	// Callees come first, so their dependencies are known
+	final Map<String, Set<String>> dependencies = new HashMap<> ();
+	keys = new HashMap<> ();
+	for (final String funcName: order)
+	    {
+		final Set<String> reached = new TreeSet<> ();
+		for (final String callee: calls.get (funcName))
+		    {
+			reached.add (callee);
+			reached.addAll (dependencies.get (callee));
+		    }
+		dependencies.put (funcName, reached);
+
+		final StringBuilder key = new StringBuilder (funcName + ":" + functions.get (funcName));
+		for (final String name: reached)
+		    key.append ("\n").append (name).append ("=").append (functions.get (name));
+		keys.put (funcName, key.toString ());
+	    }
+    }
+
+    // The functions in the order they were given
+    Map<String, Expression> getFunctions ()
+    {
+	return functions;
+    }
+
+    // Every function after the functions it calls
+    List<String> getOrder ()
+    {
+	return order;
+    }
+
+    Set<String> getCalls (final String funcName)
+    {
+	return calls.get (funcName);
+    }
+
+    String getKey (final String funcName)
+    {
+	return keys.get (funcName);
+    }
+
+    private void visit (final String funcName,
+			final Map<String, Integer> state,
+			final Deque<String> path)
+	throws Exception
+    {
+	final Integer seen = state.get (funcName);
+	if (seen != null && seen == VISITED)
+	    return;
+
+	path.addLast (funcName);
+	if (seen != null)
+	    {
+		// Report the cycle from where it starts
+		final StringBuilder cycle = new StringBuilder ();
+		boolean inCycle = false;
+		for (final String name: path)
+		    {
+			inCycle |= name.equals (funcName);
+			if (inCycle)
+			    cycle.append (cycle.length () > 0 ? " -> " : "").append (name);
+		    }
+
+		throw new Exception (funcName + " is defined in terms of itself (" + cycle + ").");
+	    }
+
+	state.put (funcName, VISITING);
+	for (final String callee: calls.get (funcName))
+	    visit (callee, state, path);
+	state.put (funcName, VISITED);
+	path.removeLast ();
+
+	order.add (funcName);
+    }
+
+    private void collectCalls (final Expression exp, final Set<String> called)
+    {
+	new Fold<Void, RuntimeException> ()
+	    {
+		protected Void leaf (final Expression exp)
+		{
+		    return null;
+		}
+
+		protected Void node (final Expression exp, final List<Void> operands)
+		{
+		    if (functions.containsKey (exp.getOperator ()))
+			called.add (exp.getOperator ());
+		    return null;
+		}
+	    }.apply (exp);
+    }
+}
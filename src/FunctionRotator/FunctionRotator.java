@@ -1,23 +1,17 @@
 package FunctionRotator;
 
 import GNUPlot.GNUPlot;
-import Parser.Expression;
-import Parser.ExpressionStream;
-import Parser.ParseError;
-import Lexer.TokenStream;
 
 import java.util.logging.Logger;
 import java.util.logging.StreamHandler;
 import java.util.logging.SimpleFormatter;
 import java.util.logging.Level;
-import java.util.Formatter;
-import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
+import java.util.List;
+import java.util.Arrays;
 import java.util.Map;
 import java.util.HashMap;
-import java.util.Set;
-import java.util.HashSet;
 import java.awt.Frame;
 import java.awt.Dialog;
 import java.awt.GridBagLayout;
@@ -31,7 +25,6 @@ import java.awt.event.WindowAdapter;
 import java.awt.event.WindowEvent;
 import java.awt.event.ActionListener;
 import java.awt.event.ActionEvent;
-import java.util.Arrays;
 
 public final class FunctionRotator
 {
@@ -45,15 +38,36 @@ public final class FunctionRotator
 
 
     private static GNUPlot gnuplot;
+    private static final Renderer renderer = new Renderer ();
+    // Plot and Rotate render here, off the event dispatch thread
+    private static RenderQueue renderQueue;
+    private static Animator animator;
+    private static Choice sweep;
     private static Frame appWindow;
     private static ByteArrayOutputStream log;
     private static StreamHandler logHandler;
 
     private static final int NUMBER_FUNCTIONS = 10;
     private static final String PROGRAM_NAME = "Function Rotator";
+    private static final double FRAMES_PER_SECOND = 25;
+    private static final double SWEEP_SECONDS = 8;
 
     public static void main (final String args[])
     {
+	if (Arrays.asList (args).contains ("--batch"))
+	    {
+		// Headless: no window and no shared gnuplot process
+		System.exit (BatchRenderer.run (args));
+		return;
+	    }
+	else if (args.length > 0)
+	    {
+		System.err.println (BatchRenderer.USAGE);
+		System.err.println ("Without arguments, the window opens.");
+		System.exit (2);
+		return;
+	    }
+
 	try
 	    {
 		gnuplot = new GNUPlot ("gnuplot");
@@ -63,6 +77,9 @@ public final class FunctionRotator
 		alertUser (e.getMessage ());
 	    }
 
+	renderQueue = new RenderQueue (renderer, gnuplot, FunctionRotator::alertUser);
+	animator = new Animator (renderer, gnuplot, FunctionRotator::alertUser);
+
 	log = new ByteArrayOutputStream ();
 	logHandler = new StreamHandler (log, new SimpleFormatter ());
 	logHandler.setLevel (Level.ALL);
@@ -103,6 +120,17 @@ public final class FunctionRotator
 	appWindow.add (b, makeConstraints (x, y,  1, 1));
 	x += 1;
 
+	b = new Button ("Measure");
+	b.addActionListener (new ActionListener ()
+	    {
+		public void actionPerformed (final ActionEvent e)
+		{
+		    measure ();
+		}
+	    });
+	appWindow.add (b, makeConstraints (x, y, 1, 1));
+	x += 1;
+
 
 	b = new Button ("View Log");
 	b.addActionListener (new ActionListener ()
@@ -121,12 +149,34 @@ public final class FunctionRotator
 	x += 1;
 
 	plotStyle = new Choice ();
-	final String styles[] =
-	    {"lines", "points", "linespoints", "filledcurves", "vectors", "pm3d"};
-	for (final String style: styles)
+	for (final String style: PlotSpec.STYLES)
 	    plotStyle.add (style);
 	appWindow.add (plotStyle, makeConstraints (x, y, 3, 1));
 	x += 3;
+
+	++y;
+	x = 0;
+	// Animation
+	b = new Button ("Animate");
+	b.addActionListener (new ActionListener ()
+	    {
+		public void actionPerformed (final ActionEvent e)
+		{
+		    animate ();
+		}
+	    });
+	appWindow.add (b, makeConstraints (x, y, 1, 1));
+	x += 1;
+
+	l = new Label ("Sweep:");
+	appWindow.add (l, makeConstraints (x, y, 1, 1));
+	x += 1;
+
+	sweep = new Choice ();
+	sweep.add ("revolution");
+	sweep.add ("view");
+	appWindow.add (sweep, makeConstraints (x, y, 2, 1));
+	x += 2;
 	
 	++y;
 	x = 0;
@@ -218,77 +268,60 @@ public final class FunctionRotator
 
     private static void plot ()
     {
-	
-	final Set<String> toProcess = getToProcess ();
-
-
-	try
-	    {
-		assertFunctionsValid (toProcess);
-		defineFunctions (toProcess);
-		assertRangesValid ();
-		defineRanges ();
+	render (PlotSpec.Mode.PLOT);
+    }
 
-		final StringBuilder command = new StringBuilder ();
-		final Formatter fmt = new Formatter (command);
+    private static void rotate ()
+    {
+	render (PlotSpec.Mode.ROTATE);
+    }
 
-		fmt.format ("unset parametric\n");
-		fmt.format ("set style function %s\n", plotStyle.getSelectedItem ());
-		fmt.format ("plot");
-		toProcess.stream ().forEach (funcName -> fmt.format (" %s(x),", funcName));
-		command.setCharAt (command.length () - 1, '\n');
+    // The fields are read here, on the event dispatch thread, and the
+    // rest happens in the background
+    private static void render (final PlotSpec.Mode mode)
+    {
+	animator.stop ();
+	renderQueue.submit (snapshot (mode));
+    }
 
-		gnuplot.send (command.toString ());
-	    }
-	catch (final Exception e)
+    // Starts sweeping the rotated solids, or stops a running sweep
+    private static void animate ()
+    {
+	if (animator.isRunning ())
 	    {
-		alertUser (e.getMessage ());
+		animator.stop ();
 		return;
 	    }
+
+	final Animation.Sweep selected = sweep.getSelectedItem ().equals ("view")
+	    ? Animation.Sweep.VIEW : Animation.Sweep.REVOLUTION;
+	animator.start (snapshot (PlotSpec.Mode.ROTATE), selected,
+			FRAMES_PER_SECOND, SWEEP_SECONDS);
     }
 
-    private static void rotate ()
+    // Integrating can take seconds, so it happens in the background too
+    private static void measure ()
     {
-	final Set<String> toProcess = getToProcess ();
+	renderQueue.measure (snapshot (PlotSpec.Mode.ROTATE), FunctionRotator::showMeasurements);
+    }
 
-	try
+    private static void showMeasurements (final List<String> report)
+    {
+	final Frame measureWindow = new Frame ("Solids of Revolution");
+	measureWindow.addWindowListener (new WindowAdapter ()
 	    {
-		assertFunctionsValid (toProcess);
-		defineFunctions (toProcess);
-		assertAxesValid (toProcess);
-		assertRangesValid ();
-		defineRanges ();
-		final StringBuilder command = new StringBuilder ();
-		final Formatter fmt = new Formatter (command);
-
-		fmt.format ("set parametric\n");
-		fmt.format ("set style function %s\n", plotStyle.getSelectedItem ());
-		fmt.format ("splot");
-		
-		final String format = " u, (%s(u)+%f)*cos(v), (%s(u)+%f)*sin(v)+%f title \"%s\",";
-		for (final String funcName: toProcess)
-		    {
-			final double axisValue = Double.parseDouble (axes.get (funcName)
-								     .getText ());
-			fmt.format (format,
-				    funcName,
-				    axisValue,
-				    funcName,
-				    axisValue,
-				    axisValue,
-				    funcName);
-		    }
-		
-		command.setCharAt (command.length () - 1, '\n');
+		public void windowClosing (final WindowEvent we)
+		{
+		    measureWindow.dispose ();
+		}
+	    });
 
-		gnuplot.send (command.toString ());
-		
-	    }
-	catch (final Exception e)
-	    {
-		alertUser (e.getMessage ());
-		return;
-	    }
+	final TextArea messageArea = new TextArea (String.join ("\n", report));
+	messageArea.setEditable (false);
+
+	measureWindow.add (messageArea);
+	measureWindow.pack ();
+	measureWindow.setVisible (true);
     }
 
     private static void viewLog ()
@@ -303,7 +336,11 @@ public final class FunctionRotator
 	    });
 
 	logHandler.flush ();
-	final TextArea messageArea = new TextArea (log.toString ());
+	final TextArea messageArea =
+	    new TextArea ("Render latency: " + gnuplot.getLatency () + "\n"
+			  + "Animation frames: " + animator.getShownFrames () + " shown, "
+			  + animator.getDroppedFrames () + " dropped\n\n"
+			  + log.toString ());
 	messageArea.setEditable (false);
 
 	logWindow.add (messageArea);
@@ -311,150 +348,23 @@ public final class FunctionRotator
 	logWindow.setVisible (true);
     }
 
-    private static Set<String> getToProcess ()
+    // Everything plot () and rotate () need, read from the fields at once
+    private static PlotSpec snapshot (final PlotSpec.Mode mode)
     {
-	final Set<String> toProcess = new HashSet<> ();
+	final Map<String, String> functionTexts = new HashMap<> ();
+	final Map<String, String> axisTexts = new HashMap<> ();
 	for (final Map.Entry<String, TextField> entry: functions.entrySet ())
 	    if (!entry.getValue ().getText ().equals (""))
-		toProcess.add (entry.getKey ());
-
-	return toProcess;
-    }
-	
-    private static void assertFunctionsValid (final Set<String> toProcess)
-	throws Exception
-    {
-	for (final String funcName: toProcess)
-	    {
-		final String function = functions.get (funcName).getText () + ";";
-		// Make sure function contains one expression
-		if (function.indexOf (";") != function.length () - 1)
-		    throw new Exception ("Unexpected character ';' in " + funcName + ".");
-		// Make sure function does not assign
-		if (function.indexOf ("=") != -1)
-		    throw new Exception ("Unexpected character '=' in " + funcName + ".");
-		
-		final ByteArrayInputStream in =
-		    new ByteArrayInputStream (function.getBytes ());
-		final ExpressionStream expIn = new ExpressionStream (new TokenStream (in));
-		try
-		    {
-			final Expression exp = expIn.read ();
-			assertNoInvalidReferences (exp, toProcess);
-		    }
-		catch (final ParseError pe)
-		    {
-			throw new Exception (funcName + ": " + pe.getMessage (), pe);
-		    }
-		catch (final Exception e)
-		    {
-			throw new Exception (funcName + ": " + e.getMessage (), e);
-		    }
-	    }
-    }
-
-    private static void assertNoInvalidReferences (final Expression exp,
-						   final Set<String> toProcess)
-	throws Exception
-    {
-	final Set<String> preDef = new HashSet<> (Arrays.asList (new String[]
 		{
-	    "+", "-", "*", "/", "^", "sin", "cos", "tan", "log", "atan", "acos", "asin", "exp"
-		}));
-
-	switch (exp.getType ())
-	    {
-	    case NAME:
-		// Only allowed predefined names
-		if (!exp.getName ().equals ("pi") && !exp.getName ().equals ("x"))
-		    throw new Exception ("reference to undefined name '" + exp.getName () + "'.");
-		break;
-	    case OPERATOR:
-		final String op = exp.getOperator ();
-		if (!toProcess.contains (op) && !preDef.contains (op))
-		    throw new Exception ("reference to undefined operator " + "'.");
-
-		for (final Expression e: exp.getOperands ())
-		    assertNoInvalidReferences (e, toProcess);
-		
-		break;
-	    }
-    }
-
-    private static void assertRangesValid ()
-	throws Exception
-    {
-	final String names[] = {
-	    "x lower bound", "x upper bound",
-	    "y lower bound", "y upper bound",
-	    "z lower bound", "z upper bound"
-	};
-
-	final String values[] = {
-	    xMin.getText (), xMax.getText (),
-	    yMin.getText (), yMax.getText (),
-	    zMin.getText (), xMax.getText ()
-	};
-	    
-
-	for (int i = 0; i < names.length; ++i)
-	    try
-		{
-		    Double.parseDouble (values[i]);
-		}
-	    catch (final Exception e)
-		{
-		    throw new Exception ("Syntax error in " + names[i] + " (must be a number)");
-		}
-    }
-
-    private static void assertAxesValid (final Set<String> toProcess)
-	throws Exception
-    {
-	for (final String funcName: toProcess)
-	    try
-		{
-		    Double.parseDouble (axes.get (funcName).getText ());
-		}
-	    catch (final Exception e)
-		{
-		    throw new Exception ("Syntax error in " + funcName + "axis (must be a number)");
+		    functionTexts.put (entry.getKey (), entry.getValue ().getText ());
+		    axisTexts.put (entry.getKey (), axes.get (entry.getKey ()).getText ());
 		}
-    }
-    
-    private static void defineFunctions (final Set<String> toProcess)
-	throws IOException
-    {
-	final StringBuilder command = new StringBuilder ();
-	final Formatter fmt = new Formatter (command);
-	for (final String funcName: toProcess)
-	    {
-		final String value = functions.get (funcName).getText ().replace ("^", "**");
-		fmt.format ("%s(x) = (%s)\n", funcName, value);
-	    }
-
-	gnuplot.send (command.toString ());
-    }
-
-    private static void defineRanges ()
-	throws IOException
-    {
-	final StringBuilder command = new StringBuilder ();
-	final Formatter fmt = new Formatter (command);
-
-	final double minX = Double.parseDouble (xMin.getText ());
-	final double maxX = Double.parseDouble (xMax.getText ());
-
-	final double minY = Double.parseDouble (yMin.getText ());
-	final double maxY = Double.parseDouble (yMax.getText ());
-
-	final double minZ = Double.parseDouble (zMin.getText ());
-	final double maxZ = Double.parseDouble (zMax.getText ());
 
-	fmt.format ("set xrange [%f:%f]\n", minX, maxX);
-	fmt.format ("set yrange [%f:%f]\n", minY, maxY);
-	fmt.format ("set zrange [%f:%f]\n", minZ, maxZ);
-	gnuplot.send (command.toString ());
+	return new PlotSpec (PROGRAM_NAME, mode, plotStyle.getSelectedItem (),
+			     xMin.getText (), xMax.getText (),
+			     yMin.getText (), yMax.getText (),
+			     zMin.getText (), zMax.getText (),
+			     functionTexts, axisTexts);
     }
 
     private static void alertUser (final String message)
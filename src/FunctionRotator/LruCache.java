@@ -0,0 +1,36 @@
+package FunctionRotator;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+// A bounded map that evicts its least recently used entry.
+final class LruCache<K, V>
+{
+    private final Map<K, V> entries;
+
+    LruCache (final int capacity)
+    {
+	entries = new LinkedHashMap<K, V> (16, 0.75f, true)
+	    {
+		protected boolean removeEldestEntry (final Map.Entry<K, V> eldest)
+		{
+		    return size () > capacity;
+		}
+	    };
+    }
+
+    synchronized V get (final K key)
+    {
+	return entries.get (key);
+    }
+
+    synchronized void put (final K key, final V value)
+    {
+	entries.put (key, value);
+    }
+
+    synchronized int size ()
+    {
+	return entries.size ();
+    }
+}
@@ -0,0 +1,109 @@
+package FunctionRotator;
+
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.Collections;
+
+// An immutable snapshot of everything one plot needs, as the user entered
+// it. Only functions that are actually given are included.
+public final class PlotSpec
+{
+    public enum Mode
+    {
+	PLOT, ROTATE
+    }
+
+    // The gnuplot data styles a plot may be drawn in
+    public static final List<String> STYLES =
+	List.of ("lines", "points", "linespoints", "filledcurves", "vectors", "pm3d");
+
+    private final String name;
+    private final Mode mode;
+    private final String style;
+    private final String xMin, xMax;
+    private final String yMin, yMax;
+    private final String zMin, zMax;
+    private final Map<String, String> functions;
+    private final Map<String, String> axes;
+
+    public PlotSpec (final String name,
+		     final Mode mode,
+		     final String style,
+		     final String xMin, final String xMax,
+		     final String yMin, final String yMax,
+		     final String zMin, final String zMax,
+		     final Map<String, String> functions,
+		     final Map<String, String> axes)
+    {
+	this.name = name;
+	this.mode = mode;
+	this.style = style;
+	this.xMin = xMin;
+	this.xMax = xMax;
+	this.yMin = yMin;
+	this.yMax = yMax;
+	this.zMin = zMin;
+	this.zMax = zMax;
+	// Sorted, so functions are always drawn in the order Y0..Y9
+	this.functions = Collections.unmodifiableMap (new TreeMap<> (functions));
+	this.axes = Collections.unmodifiableMap (new TreeMap<> (axes));
+    }
+
+    public String getName ()
+    {
+	return name;
+    }
+
+    public Mode getMode ()
+    {
+	return mode;
+    }
+
+    public String getStyle ()
+    {
+	return style;
+    }
+
+    public String getXMin ()
+    {
+	return xMin;
+    }
+
+    public String getXMax ()
+    {
+	return xMax;
+    }
+
+    public String getYMin ()
+    {
+	return yMin;
+    }
+
+    public String getYMax ()
+    {
+	return yMax;
+    }
+
+    public String getZMin ()
+    {
+	return zMin;
+    }
+
+    public String getZMax ()
+    {
+	return zMax;
+    }
+
+    // Function name to source text
+    public Map<String, String> getFunctions ()
+    {
+	return functions;
+    }
+
+    // Function name to the text of the y value it is rotated about
+    public Map<String, String> getAxes ()
+    {
+	return axes;
+    }
+}
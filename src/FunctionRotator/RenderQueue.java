@@ -0,0 +1,123 @@
+package FunctionRotator;
+
+import GNUPlot.GNUPlot;
+import GNUPlot.Batch;
+
+import java.awt.EventQueue;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Consumer;
+
+// Renders PlotSpecs on a background thread so the window stays responsive.
+// Only the latest request matters: submitting one cancels the request
+// being rendered and any waiting to be, and a render that was superseded
+// never reaches gnuplot. Errors are passed to onError on the event
+// dispatch thread.
+final class RenderQueue
+{
+    private final Renderer renderer;
+    private final GNUPlot gnuplot;
+    private final Consumer<String> onError;
+    private final ExecutorService worker;
+    // Only touched by the worker thread
+    private final Batch batch;
+
+    // Guarded by this
+    private Future<?> current;
+    private long latest;
+    private boolean committing;
+
+    RenderQueue (final Renderer renderer,
+		 final GNUPlot gnuplot,
+		 final Consumer<String> onError)
+    {
+	this.renderer = renderer;
+	this.gnuplot = gnuplot;
+	this.onError = onError;
+	batch = new Batch ();
+	worker = Executors.newSingleThreadExecutor (task -> {
+		final Thread thread = new Thread (task, "render");
+		thread.setDaemon (true);
+		return thread;
+	    });
+    }
+
+    synchronized void submit (final PlotSpec spec)
+    {
+	// A commit is never interrupted, so gnuplot never sees half a batch
+	if (current != null)
+	    current.cancel (!committing);
+
+	final long request = ++latest;
+	current = worker.submit (() -> render (spec, request));
+    }
+
+    // Measures spec after any render already waiting, and passes the
+    // report to onReport on the event dispatch thread. Later renders do
+    // not cancel it.
+    void measure (final PlotSpec spec, final Consumer<List<String>> onReport)
+    {
+	worker.submit (() ->
+	    {
+		try
+		    {
+			final List<String> report = renderer.measure (spec);
+			EventQueue.invokeLater (() -> onReport.accept (report));
+		    }
+		catch (final Exception e)
+		    {
+			EventQueue.invokeLater (() -> onError.accept (e.getMessage ()));
+		    }
+	    });
+    }
+
+    void close ()
+    {
+	worker.shutdownNow ();
+    }
+
+    private void render (final PlotSpec spec, final long request)
+    {
+	try
+	    {
+		batch.clear ();
+		renderer.render (spec, batch);
+
+		synchronized (this)
+		    {
+			if (request != latest)
+			    return;
+			committing = true;
+		    }
+
+		try
+		    {
+			// Completion is recorded in gnuplot.getLatency ()
+			gnuplot.commit (batch);
+		    }
+		finally
+		    {
+			synchronized (this)
+			    {
+				committing = false;
+			    }
+		    }
+	    }
+	catch (final CancellationException ce)
+	    {
+		// Superseded by a newer request
+	    }
+	catch (final Exception e)
+	    {
+		synchronized (this)
+		    {
+			if (request != latest)
+			    return;
+		    }
+		EventQueue.invokeLater (() -> onError.accept (e.getMessage ()));
+	    }
+    }
+}
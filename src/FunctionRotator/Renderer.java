@@ -0,0 +1,528 @@
+package FunctionRotator;
+
+import GNUPlot.GNUPlot;
+import GNUPlot.Batch;
+import Geometry.AdaptiveSampler;
+import Geometry.Curve;
+import Geometry.Mesh;
+import Geometry.MeshGenerator;
+import Geometry.Integrator;
+import Geometry.Revolution;
+import Evaluator.KernelCompiler;
+import Evaluator.Differentiator;
+import Evaluator.Interval;
+import Evaluator.IntervalEvaluator;
+import Evaluator.CompileError;
+import Evaluator.Builtins;
+import Parser.Expression;
+import Parser.Fold;
+import Parser.ExpressionStream;
+import Parser.ParseError;
+import Lexer.CharScanner;
+
+import java.util.Formatter;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Set;
+import java.util.HashSet;
+import java.util.Arrays;
+import java.util.function.DoubleUnaryOperator;
+import java.util.concurrent.CancellationException;
+
+// Turns a PlotSpec into the gnuplot commands and data that draw it:
+// validates the input, compiles and samples the functions and builds the
+// curves or meshes. Holds no per-plot state, so one Renderer can serve
+// several threads.
+public final class Renderer
+{
+    private static final int MESH_V_SAMPLES = 73;
+    private static final int RANGE_DEPTH = 16;
+    private static final double RANGE_TOLERANCE = 1e-3;
+    private static final double RANGE_MARGIN = 0.05;
+    private static final String DEFAULT_VIEW = "60,30";
+
+    private final MeshGenerator meshGenerator;
+    private final AdaptiveSampler plotSampler;
+    private final AdaptiveSampler rotateSampler;
+    private final Revolution revolution;
+
+    // Parsed functions keyed by their source, and compiled kernels and
+    // sampled curves keyed by FunctionGraph.getKey, so an edit only
+    // rebuilds the edited function and the functions that call it
+    private final LruCache<String, Expression> parsedFunctions;
+    private final LruCache<String, DoubleUnaryOperator> compiledFunctions;
+    private final LruCache<String, Curve> plotCurves;
+    private final LruCache<String, Curve> rotateCurves;
+
+    public Renderer ()
+    {
+	meshGenerator = new MeshGenerator (MESH_V_SAMPLES);
+	plotSampler = new AdaptiveSampler (64, 12, 2000, 1e-3);
+	// Every point becomes a row of MESH_V_SAMPLES vertices
+	rotateSampler = new AdaptiveSampler (32, 10, 400, 1e-3);
+	revolution = new Revolution (new Integrator (1e-10, 30));
+	parsedFunctions = new LruCache<> (64);
+	compiledFunctions = new LruCache<> (64);
+	plotCurves = new LruCache<> (64);
+	rotateCurves = new LruCache<> (64);
+    }
+
+    // Adds the ranges, style and plot command for spec to batch
+    public void render (final PlotSpec spec, final Batch batch)
+	throws Exception
+    {
+	switch (spec.getMode ())
+	    {
+	    case PLOT:
+		plot (spec, batch);
+		break;
+	    case ROTATE:
+		rotate (spec, batch);
+		break;
+	    }
+    }
+
+    // The volume and surface area of each function's solid of revolution
+    // over the x range, one line per function
+    public List<String> measure (final PlotSpec spec)
+	throws Exception
+    {
+	final FunctionGraph graph = assertFunctionsValid (spec);
+	final Map<String, Expression> definitions = graph.getFunctions ();
+	assertAxesValid (spec);
+	assertRangesValid (spec);
+
+	final double minX = Double.parseDouble (spec.getXMin ());
+	final double maxX = Double.parseDouble (spec.getXMax ());
+	final Map<String, DoubleUnaryOperator> kernels = compileFunctions (graph);
+
+	final List<String> report = new ArrayList<> ();
+	for (final Map.Entry<String, DoubleUnaryOperator> entry: kernels.entrySet ())
+	    {
+		checkCancelled ();
+		final String funcName = entry.getKey ();
+		final double axis = Double.parseDouble (spec.getAxes ().get (funcName));
+		final DoubleUnaryOperator derivative;
+		try
+		    {
+			derivative = KernelCompiler.compile (Differentiator.derivative (definitions.get (funcName),
+											definitions,
+											Builtins.VARIABLE),
+							     definitions);
+		    }
+		catch (final CompileError ce)
+		    {
+			throw new Exception (funcName + ": " + ce.getMessage (), ce);
+		    }
+
+		report.add (funcName + " about y = " + axis + ": volume "
+			    + revolution.volume (entry.getValue (), axis, minX, maxX)
+			    + ", surface area "
+			    + revolution.surfaceArea (entry.getValue (), derivative, axis, minX, maxX));
+	    }
+
+	return report;
+    }
+
+    private void plot (final PlotSpec spec, final Batch batch)
+	throws Exception
+    {
+	final FunctionGraph graph = assertFunctionsValid (spec);
+	assertRangesValid (spec);
+	defineRanges (fillRanges (spec, graph.getFunctions ()), batch);
+
+	final List<Curve> curves =
+	    sampleFunctions (spec, graph, compileFunctions (graph), plotSampler, plotCurves);
+
+	batch.set ("style data", spec.getStyle ());
+
+	final StringBuilder command = new StringBuilder ();
+	final Formatter fmt = new Formatter (command);
+
+	fmt.format ("plot");
+
+	final List<double[]> data = new ArrayList<> ();
+	for (final Curve curve: curves)
+	    {
+		fmt.format (" '-' %s using 1:2 title \"%s\",",
+			    GNUPlot.binaryFormat (2, curve.size ()),
+			    curve.getTitle ());
+		data.add (curve.getPoints ());
+	    }
+
+	// The binary data must start right after the command's newline
+	command.setLength (command.length () - 1);
+
+	batch.add (command.toString (), data);
+    }
+
+    private void rotate (final PlotSpec spec, final Batch batch)
+	throws Exception
+    {
+	final List<Mesh> meshes = solids (spec, batch);
+	// gnuplot's default view, in case an Animation turned it
+	batch.set ("view", DEFAULT_VIEW);
+	splot (meshes, batch);
+    }
+
+    // The solids of spec, sampled once and swept by an Animator. The ranges
+    // and style are added to batch.
+    Animation animation (final PlotSpec spec, final Batch batch)
+	throws Exception
+    {
+	return new Animation (solids (spec, batch), axisValues (spec));
+    }
+
+    // The meshes rotate () draws, after adding their ranges and style to batch
+    private List<Mesh> solids (final PlotSpec spec, final Batch batch)
+	throws Exception
+    {
+	final FunctionGraph graph = assertFunctionsValid (spec);
+	assertAxesValid (spec);
+	assertRangesValid (spec);
+	defineRanges (fillRanges (spec, graph.getFunctions ()), batch);
+
+	checkCancelled ();
+	final List<Mesh> meshes =
+	    meshGenerator.generate (sampleFunctions (spec,
+						     graph,
+						     compileFunctions (graph),
+						     rotateSampler,
+						     rotateCurves),
+				    axisValues (spec));
+
+	batch.set ("style data", spec.getStyle ());
+	return meshes;
+    }
+
+    private static Map<String, Double> axisValues (final PlotSpec spec)
+    {
+	final Map<String, Double> axisValues = new HashMap<> ();
+	for (final String funcName: spec.getFunctions ().keySet ())
+	    axisValues.put (funcName, Double.parseDouble (spec.getAxes ().get (funcName)));
+	return axisValues;
+    }
+
+    static void splot (final List<Mesh> meshes, final Batch batch)
+    {
+	final StringBuilder command = new StringBuilder ();
+	final Formatter fmt = new Formatter (command);
+
+	fmt.format ("splot");
+
+	final List<double[]> data = new ArrayList<> ();
+	for (final Mesh mesh: meshes)
+	    {
+		fmt.format (" %s,", splotSource (mesh.getTitle (),
+						 mesh.getVCount (), mesh.getUCount ()));
+		data.add (mesh.getVertices ());
+	    }
+
+	// The binary data must start right after the command's newline
+	command.setLength (command.length () - 1);
+
+	batch.add (command.toString (), data);
+    }
+
+    // One '-' of an splot, reading x, y, z records laid out in dimensions
+    static String splotSource (final String title, final int... dimensions)
+    {
+	return String.format ("'-' %s using 1:2:3 title \"%s\"",
+			      GNUPlot.binaryFormat (3, dimensions), title);
+    }
+
+    private FunctionGraph assertFunctionsValid (final PlotSpec spec)
+	throws Exception
+    {
+	final Set<String> toProcess = spec.getFunctions ().keySet ();
+	final Map<String, Expression> parsed = new LinkedHashMap<> ();
+	for (final String funcName: toProcess)
+	    {
+		checkCancelled ();
+		final String function = spec.getFunctions ().get (funcName) + ";";
+		final Expression cached = parsedFunctions.get (function);
+		if (cached != null)
+		    {
+			// Which functions exist may have changed since
+			try
+			    {
+				assertNoInvalidReferences (cached, toProcess);
+			    }
+			catch (final Exception e)
+			    {
+				throw new Exception (funcName + ": " + e.getMessage (), e);
+			    }
+			parsed.put (funcName, cached);
+			continue;
+		    }
+
+		// Make sure function contains one expression
+		if (function.indexOf (";") != function.length () - 1)
+		    throw new Exception ("Unexpected character ';' in " + funcName + ".");
+		// Make sure function does not assign
+		if (function.indexOf ("=") != -1)
+		    throw new Exception ("Unexpected character '=' in " + funcName + ".");
+		
+		final ExpressionStream expIn = new ExpressionStream (new CharScanner (function));
+		try
+		    {
+			final Expression exp = expIn.read ();
+			assertNoInvalidReferences (exp, toProcess);
+			parsed.put (funcName, exp);
+			parsedFunctions.put (function, exp);
+		    }
+		catch (final ParseError pe)
+		    {
+			throw new Exception (funcName + ": " + pe.getMessage (), pe);
+		    }
+		catch (final Exception e)
+		    {
+			throw new Exception (funcName + ": " + e.getMessage (), e);
+		    }
+	    }
+
+	return new FunctionGraph (parsed);
+    }
+
+    private Map<String, DoubleUnaryOperator> compileFunctions (final FunctionGraph graph)
+	throws Exception
+    {
+	final Map<String, Expression> definitions = graph.getFunctions ();
+	final Map<String, DoubleUnaryOperator> compiled = new HashMap<> ();
+	for (final String funcName: graph.getOrder ())
+	    {
+		checkCancelled ();
+		// A kernel inlines every function its function calls, directly
+		// or not, so it is reused until one of those is edited
+		final String key = graph.getKey (funcName);
+		DoubleUnaryOperator kernel = compiledFunctions.get (key);
+		if (kernel == null)
+		    try
+			{
+			    kernel = KernelCompiler.compile (definitions.get (funcName), definitions);
+			    compiledFunctions.put (key, kernel);
+			}
+		    catch (final CompileError ce)
+			{
+			    throw new Exception (funcName + ": " + ce.getMessage (), ce);
+			}
+
+		compiled.put (funcName, kernel);
+	    }
+
+	// Drawn in the order of the spec
+	final Map<String, DoubleUnaryOperator> kernels = new LinkedHashMap<> ();
+	for (final String funcName: definitions.keySet ())
+	    kernels.put (funcName, compiled.get (funcName));
+
+	return kernels;
+    }
+
+    private static void assertNoInvalidReferences (final Expression exp,
+						   final Set<String> toProcess)
+	throws Exception
+    {
+	final Set<String> preDef = new HashSet<> (Arrays.asList (new String[]
+		{
+	    "+", "-", "*", "/", "^", "sin", "cos", "tan", "log", "atan", "acos", "asin", "exp"
+		}));
+
+	new Fold<Void, Exception> ()
+	    {
+		protected Void leaf (final Expression exp)
+		    throws Exception
+		{
+		    // Only allowed predefined names
+		    if (exp.getType () == Expression.Type.NAME
+			&& !exp.getName ().equals ("pi") && !exp.getName ().equals ("x"))
+			throw new Exception ("reference to undefined name '" + exp.getName () + "'.");
+		    return null;
+		}
+
+		protected Void node (final Expression exp, final List<Void> operands)
+		    throws Exception
+		{
+		    final String op = exp.getOperator ();
+		    if (!toProcess.contains (op) && !preDef.contains (op))
+			throw new Exception ("reference to undefined operator " + "'.");
+		    return null;
+		}
+	    }.apply (exp);
+    }
+
+    private static void assertRangesValid (final PlotSpec spec)
+	throws Exception
+    {
+	final String names[] = {
+	    "x lower bound", "x upper bound",
+	    "y lower bound", "y upper bound",
+	    "z lower bound", "z upper bound"
+	};
+
+	final String values[] = {
+	    spec.getXMin (), spec.getXMax (),
+	    spec.getYMin (), spec.getYMax (),
+	    spec.getZMin (), spec.getZMax ()
+	};
+	    
+
+	for (int i = 0; i < names.length; ++i)
+	    try
+		{
+		    // Blank y and z bounds are filled in by fillRanges
+		    if (i < 2 || !isAuto (values[i]))
+			Double.parseDouble (values[i]);
+		}
+	    catch (final Exception e)
+		{
+		    throw new Exception ("Syntax error in " + names[i] + " (must be a number)");
+		}
+    }
+
+    private static boolean isAuto (final String bound)
+    {
+	return bound.trim ().isEmpty ();
+    }
+
+    private static void assertAxesValid (final PlotSpec spec)
+	throws Exception
+    {
+	for (final String funcName: spec.getFunctions ().keySet ())
+	    try
+		{
+		    Double.parseDouble (spec.getAxes ().get (funcName));
+		}
+	    catch (final Exception e)
+		{
+		    throw new Exception ("Syntax error in " + funcName + "axis (must be a number)");
+		}
+    }
+    
+    // Curves are cached per sampler, as the samplers differ in density
+    private static List<Curve> sampleFunctions (final PlotSpec spec,
+						final FunctionGraph graph,
+						final Map<String, DoubleUnaryOperator> kernels,
+						final AdaptiveSampler sampler,
+						final LruCache<String, Curve> cache)
+    {
+	final double minX = Double.parseDouble (spec.getXMin ());
+	final double maxX = Double.parseDouble (spec.getXMax ());
+
+	final List<Curve> curves = new ArrayList<> ();
+	for (final Map.Entry<String, DoubleUnaryOperator> entry: kernels.entrySet ())
+	    {
+		checkCancelled ();
+		final String key = minX + ":" + maxX + "|" + graph.getKey (entry.getKey ());
+		Curve curve = cache.get (key);
+		if (curve == null)
+		    {
+			curve = sampler.sample (entry.getKey (), entry.getValue (), minX, maxX);
+			cache.put (key, curve);
+		    }
+		curves.add (curve);
+	    }
+
+	return curves;
+    }
+
+    // Fills in blank y and z bounds from guaranteed bounds of the functions
+    // over the x range: the values of the functions when plotting, and the
+    // extent of their solids when rotating
+    private static PlotSpec fillRanges (final PlotSpec spec,
+					final Map<String, Expression> definitions)
+	throws Exception
+    {
+	final String bounds[] = {
+	    spec.getYMin (), spec.getYMax (), spec.getZMin (), spec.getZMax ()
+	};
+	if (!isAuto (bounds[0]) && !isAuto (bounds[1])
+	    && !isAuto (bounds[2]) && !isAuto (bounds[3]))
+	    return spec;
+
+	final double minX = Double.parseDouble (spec.getXMin ());
+	final double maxX = Double.parseDouble (spec.getXMax ());
+	final boolean rotating = spec.getMode () == PlotSpec.Mode.ROTATE;
+
+	Interval y = Interval.EMPTY, z = Interval.EMPTY;
+	for (final String funcName: definitions.keySet ())
+	    {
+		checkCancelled ();
+		final Interval values;
+		try
+		    {
+			values = IntervalEvaluator.compile (definitions.get (funcName), definitions)
+			    .bound (minX, maxX, RANGE_DEPTH, RANGE_TOLERANCE);
+		    }
+		catch (final CompileError ce)
+		    {
+			throw new Exception (funcName + ": " + ce.getMessage (), ce);
+		    }
+
+		if (values.isEmpty ())
+		    continue;
+		else if (!values.isBounded ())
+		    throw new Exception (funcName + " is unbounded for x in [" + minX + ", " + maxX
+					 + "]; enter the y and z ranges by hand.");
+
+		if (rotating)
+		    {
+			// Circles of radius |f-c| centred on y = c, z = 0
+			final double axis = Double.parseDouble (spec.getAxes ().get (funcName));
+			final double radius = values.subtract (Interval.of (axis)).abs ().getHi ();
+			y = y.union (Interval.of (axis - radius, axis + radius));
+			z = z.union (Interval.of (-radius, radius));
+		    }
+		else
+		    y = z = y.union (values);
+	    }
+
+	final Interval filled[] = { pad (y), pad (z) };
+	for (int i = 0; i < bounds.length; ++i)
+	    if (isAuto (bounds[i]))
+		bounds[i] = Double.toString (i % 2 == 0 ? filled[i / 2].getLo () : filled[i / 2].getHi ());
+
+	return new PlotSpec (spec.getName (), spec.getMode (), spec.getStyle (),
+			     spec.getXMin (), spec.getXMax (),
+			     bounds[0], bounds[1], bounds[2], bounds[3],
+			     spec.getFunctions (), spec.getAxes ());
+    }
+
+    // Leaves a little room around the curves, and some range for constants
+    private static Interval pad (final Interval range)
+    {
+	if (range.isEmpty ())
+	    return Interval.of (-10, 10);
+
+	final double margin = (range.getWidth () > 0) ? RANGE_MARGIN * range.getWidth () : 1;
+	return Interval.of (range.getLo () - margin, range.getHi () + margin);
+    }
+
+    // Lets RenderQueue stop a render that was superseded, between functions
+    private static void checkCancelled ()
+    {
+	if (Thread.currentThread ().isInterrupted ())
+	    throw new CancellationException ();
+    }
+
+    private static void defineRanges (final PlotSpec spec, final Batch batch)
+    {
+	final double minX = Double.parseDouble (spec.getXMin ());
+	final double maxX = Double.parseDouble (spec.getXMax ());
+
+	final double minY = Double.parseDouble (spec.getYMin ());
+	final double maxY = Double.parseDouble (spec.getYMax ());
+
+	final double minZ = Double.parseDouble (spec.getZMin ());
+	final double maxZ = Double.parseDouble (spec.getZMax ());
+
+	// Only the ranges that changed since the last plot are resent
+	final Map<String, String> ranges = new LinkedHashMap<> ();
+	ranges.put ("xrange", String.format ("[%f:%f]", minX, maxX));
+	ranges.put ("yrange", String.format ("[%f:%f]", minY, maxY));
+	ranges.put ("zrange", String.format ("[%f:%f]", minZ, maxZ));
+	batch.set (ranges);
+    }
+}
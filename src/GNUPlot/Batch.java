@@ -0,0 +1,89 @@
+package GNUPlot;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.LinkedHashMap;
+import java.util.Collections;
+
+// Commands, their binary data and settings collected to be written to
+// gnuplot with a single flush by GNUPlot.commit. Settings are compared with
+// what gnuplot already has when the batch is committed, not when they are
+// added. A batch can be cleared and reused.
+public final class Batch
+{
+    private List<Entry> entries;
+
+    public Batch ()
+    {
+	entries = new ArrayList<> ();
+    }
+
+    public Batch add (final String command)
+    {
+	return add (command, Collections.emptyList ());
+    }
+
+    // A command reading '-' as binary followed by the data for each '-'
+    public Batch add (final String command, final List<double[]> data)
+    {
+	entries.add (new Entry (command, data, null, null));
+	return this;
+    }
+
+    // As above, but only the first lengths[i] doubles of each array are
+    // sent, so a buffer can be larger than what it holds
+    public Batch add (final String command, final List<double[]> data, final int lengths[])
+    {
+	entries.add (new Entry (command, data, lengths, null));
+	return this;
+    }
+
+    public Batch set (final String setting, final String value)
+    {
+	final Map<String, String> values = new LinkedHashMap<> ();
+	values.put (setting, value);
+	return set (values);
+    }
+
+    public Batch set (final Map<String, String> values)
+    {
+	entries.add (new Entry (null, null, null, new LinkedHashMap<> (values)));
+	return this;
+    }
+
+    public boolean isEmpty ()
+    {
+	return entries.isEmpty ();
+    }
+
+    public void clear ()
+    {
+	entries.clear ();
+    }
+
+    List<Entry> getEntries ()
+    {
+	return entries;
+    }
+
+    static final class Entry
+    {
+	final String command;
+	final List<double[]> data;
+	// Null when all of every array is sent
+	final int lengths[];
+	final Map<String, String> settings;
+
+	Entry (final String command,
+	       final List<double[]> data,
+	       final int lengths[],
+	       final Map<String, String> settings)
+	{
+	    this.command = command;
+	    this.data = data;
+	    this.lengths = lengths;
+	    this.settings = settings;
+	}
+    }
+}
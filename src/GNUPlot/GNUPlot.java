@@ -6,48 +6,467 @@ import java.io.InputStream;
 import java.io.InputStreamReader;
 import java.io.BufferedReader;
 import java.io.OutputStream;
-import java.io.PrintWriter;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.channels.Channels;
+import java.nio.channels.WritableByteChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.Map;
+import java.util.HashMap;
+import java.util.Objects;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.function.Consumer;
 
 public final class GNUPlot
 {
+    private static final int DATA_BUFFER_SIZE = 1 << 20;
+    private static final int OUTPUT_QUEUE_SIZE = 1024;
+    private static final Pattern ACKNOWLEDGEMENT = Pattern.compile ("__ack_(\\d+)__");
+
     private Process gnuplot;
-    private PrintWriter pin;
+    private OutputStream rawIn;
+    private WritableByteChannel dataIn;
+    private ByteBuffer dataBuffer;
     private BufferedReader pout;
     private BufferedReader perr;
     private Logger log;
+    private Map<String, String> settings;
+    private BlockingQueue<OutputLine> output;
+    private List<Consumer<OutputLine>> outputListeners;
+    private AtomicLong nextAcknowledgement;
+    private ConcurrentNavigableMap<Long, Acknowledgement> pending;
+    private LatencyHistogram latency;
+    // Why acknowledgements can no longer arrive, once gnuplot has gone
+    private volatile String failure;
 
     public GNUPlot (final String sessionName)
 	throws IOException
     {
-	gnuplot = new ProcessBuilder ("gnuplot").start ();
-	pin = new PrintWriter (gnuplot.getOutputStream ());
+	this (sessionName, "gnuplot");
+    }
+
+    // Runs command instead of the gnuplot on the path, e.g. a stand-in
+    // for tests
+    public GNUPlot (final String sessionName, final String... command)
+	throws IOException
+    {
+	gnuplot = new ProcessBuilder (command).start ();
+	rawIn = gnuplot.getOutputStream ();
+	dataIn = Channels.newChannel (rawIn);
+	dataBuffer =
+	    ByteBuffer.allocateDirect (DATA_BUFFER_SIZE).order (ByteOrder.LITTLE_ENDIAN);
 	pout =
 	    new BufferedReader (new InputStreamReader (gnuplot.getInputStream ()));
 	perr =
 	    new BufferedReader (new InputStreamReader (gnuplot.getErrorStream ()));
 	log = Logger.getLogger (sessionName);
 	log.setLevel (Level.ALL);
+	settings = new HashMap<> ();
+
+	// gnuplot's output is drained as it arrives, so it can never fill the
+	// pipes and block the process
+	output = new ArrayBlockingQueue<> (OUTPUT_QUEUE_SIZE);
+	outputListeners = new CopyOnWriteArrayList<> ();
+	nextAcknowledgement = new AtomicLong ();
+	pending = new ConcurrentSkipListMap<> ();
+	latency = new LatencyHistogram ();
+	startReader (pout, OutputLine.Stream.STDOUT);
+	startReader (perr, OutputLine.Stream.STDERR);
     }
     
-    public void send (final String command)
+    // False as soon as close () is called, though the process may take a
+    // moment to end
+    public boolean isAlive ()
+    {
+	return failure == null && gnuplot.isAlive ();
+    }
+
+    // Ends the gnuplot process; its reader threads stop at end of stream
+    public void close ()
+    {
+	gnuplot.destroy ();
+	failPending ("gnuplot was closed.");
+    }
+
+    // Fails every acknowledgement still pending, and any expected later
+    private void failPending (final String reason)
+    {
+	if (failure == null)
+	    failure = reason;
+	// Polled one by one, as commit () may be adding more meanwhile
+	Map.Entry<Long, Acknowledgement> entry;
+	while ((entry = pending.pollFirstEntry ()) != null)
+	    entry.getValue ().future.completeExceptionally (new IOException (failure));
+    }
+
+    public synchronized void send (final String command)
+	throws IOException
+    {
+	writeCommand (command);
+	flush ();
+    }
+
+    public void set (final String setting, final String value)
+	throws IOException
+    {
+	final Map<String, String> values = new HashMap<> ();
+	values.put (setting, value);
+	set (values);
+    }
+
+    // Sends "set <setting> <value>" for each setting whose value differs
+    // from the one last sent, all in one command. A null value unsets.
+    public synchronized void set (final Map<String, String> values)
+	throws IOException
+    {
+	final String command = settingsChanges (values);
+	if (command.length () > 0)
+	    try
+		{
+		    send (command);
+		}
+	    catch (final IOException e)
+		{
+		    forgetSettings ();
+		    throw e;
+		}
+    }
+
+    // The set/unset commands that bring gnuplot up to date with values,
+    // which are then remembered as sent. A caller whose write fails must
+    // forgetSettings (), as gnuplot may not have seen them.
+    private String settingsChanges (final Map<String, String> values)
+    {
+	final StringBuilder command = new StringBuilder ();
+	for (final Map.Entry<String, String> entry: values.entrySet ())
+	    {
+		final String setting = entry.getKey ();
+		final String value = entry.getValue ();
+		if (settings.containsKey (setting)
+		    && Objects.equals (settings.get (setting), value))
+		    continue;
+
+		if (value == null)
+		    command.append ("unset ").append (setting).append ("\n");
+		else
+		    command.append ("set ").append (setting).append (" ")
+			.append (value).append ("\n");
+	    }
+
+	settings.putAll (values);
+	// Without the last newline, as for any other command
+	if (command.length () > 0)
+	    command.setLength (command.length () - 1);
+
+	return command.toString ();
+    }
+
+    // Makes the next set () resend everything, e.g. after a "reset"
+    public synchronized void forgetSettings ()
+    {
+	settings.clear ();
+    }
+
+    // Sends a command reading '-' as binary (see binaryFormat) followed by
+    // the raw data for each '-', in order.
+    public synchronized void send (final String command, final List<double[]> data)
+	throws IOException
+    {
+	writeCommand (command);
+	for (final double values[]: data)
+	    writeData (values);
+	flush ();
+    }
+
+    // Writes the whole batch and an acknowledgement with a single flush, and
+    // returns without waiting for gnuplot, so several batches can be in
+    // flight at once. The future is as for sendAcknowledged.
+    public synchronized CompletableFuture<Long> commit (final Batch batch)
+	throws IOException
+    {
+	final Acknowledgement ack = expectAcknowledgement ();
+	try
+	    {
+		for (final Batch.Entry entry: batch.getEntries ())
+		    if (entry.settings != null)
+			{
+			    final String command = settingsChanges (entry.settings);
+			    if (command.length () > 0)
+				writeCommand (command);
+			}
+		    else
+			{
+			    writeCommand (entry.command);
+			    for (int i = 0; i < entry.data.size (); ++i)
+				{
+				    final double values[] = entry.data.get (i);
+				    writeData (values,
+					       entry.lengths == null ? values.length : entry.lengths[i]);
+				}
+			}
+		acknowledge (ack);
+	    }
+	catch (final IOException e)
+	    {
+		forgetSettings ();
+		throw e;
+	    }
+	return ack.future;
+    }
+
+    // Like send (String), but follows the command with a print of a unique
+    // sentinel. The future completes with the round trip time in
+    // nanoseconds once gnuplot has printed it, i.e. finished the command.
+    public synchronized CompletableFuture<Long> sendAcknowledged (final String command)
+	throws IOException
+    {
+	final Acknowledgement ack = expectAcknowledgement ();
+	writeCommand (command);
+	acknowledge (ack);
+	return ack.future;
+    }
+
+    public synchronized CompletableFuture<Long> sendAcknowledged (final String command,
+								  final List<double[]> data)
+	throws IOException
+    {
+	final Acknowledgement ack = expectAcknowledgement ();
+	writeCommand (command);
+	for (final double values[]: data)
+	    writeData (values);
+	acknowledge (ack);
+	return ack.future;
+    }
+
+    // Commands sent with sendAcknowledged that gnuplot has not finished yet
+    public int getPendingAcknowledgements ()
+    {
+	return pending.size ();
+    }
+
+    // Round trip times of every acknowledged command
+    public LatencyHistogram getLatency ()
+    {
+	return latency;
+    }
+
+    private Acknowledgement expectAcknowledgement ()
+    {
+	final Acknowledgement ack = new Acknowledgement (nextAcknowledgement.getAndIncrement ());
+	pending.put (ack.id, ack);
+	// A reader may have stopped before the put
+	if (failure != null)
+	    failPending (failure);
+	return ack;
+    }
+
+    // Also flushes everything written before it. A failed write fails the
+    // acknowledgement too, rather than leave it pending.
+    private void acknowledge (final Acknowledgement ack)
+	throws IOException
+    {
+	try
+	    {
+		writeText ("print \"__ack_" + ack.id + "__\"\n");
+		flush ();
+	    }
+	catch (final IOException e)
+	    {
+		pending.remove (ack.id);
+		ack.future.completeExceptionally (e);
+		throw e;
+	    }
+    }
+
+    // gnuplot runs commands in order, so an acknowledgement also covers
+    // every earlier one
+    private void acknowledged (final long id, final long time)
+    {
+	final Map<Long, Acknowledgement> done = pending.headMap (id, true);
+	for (final Acknowledgement ack: done.values ())
+	    {
+		final long roundTrip = time - ack.start;
+		latency.record (roundTrip);
+		ack.future.complete (roundTrip);
+	    }
+	done.clear ();
+    }
+
+    private static final class Acknowledgement
+    {
+	final long id;
+	final long start;
+	final CompletableFuture<Long> future;
+
+	Acknowledgement (final long id)
+	{
+	    this.id = id;
+	    start = System.nanoTime ();
+	    future = new CompletableFuture<> ();
+	}
+    }
+
+    // Describes records of columns doubles laid out in the given dimensions,
+    // fastest varying first, as written by send (String, List).
+    public static String binaryFormat (final int columns, final int... dimensions)
+    {
+	final StringBuilder format = new StringBuilder ("binary record=");
+	if (dimensions.length > 1)
+	    format.append ("(");
+	for (int i = 0; i < dimensions.length; ++i)
+	    format.append (i == 0 ? "" : ",").append (dimensions[i]);
+	if (dimensions.length > 1)
+	    format.append (")");
+
+	format.append (" format='");
+	for (int i = 0; i < columns; ++i)
+	    format.append ("%double");
+	format.append ("' endian=little");
+
+	return format.toString ();
+    }
+
+    // Everything is written through dataBuffer, which is only handed to
+    // gnuplot when full or on flush ()
+    private void writeCommand (final String command)
 	throws IOException
     {
-	logOutput ();
 	log.fine (command);
-	pin.println (command);
-	pin.flush ();
-	logOutput ();
+	writeText (command);
+	writeText ("\n");
+    }
+
+    private void writeText (final String text)
+	throws IOException
+    {
+	final byte bytes[] = text.getBytes (StandardCharsets.UTF_8);
+	for (int offset = 0; offset < bytes.length;)
+	    {
+		if (!dataBuffer.hasRemaining ())
+		    drain ();
+
+		final int n = Math.min (bytes.length - offset, dataBuffer.remaining ());
+		dataBuffer.put (bytes, offset, n);
+		offset += n;
+	    }
+    }
+
+    private void writeData (final double values[])
+	throws IOException
+    {
+	writeData (values, values.length);
+    }
+
+    // The first length doubles of values
+    private void writeData (final double values[], final int length)
+	throws IOException
+    {
+	for (int offset = 0; offset < length;)
+	    {
+		if (dataBuffer.remaining () < Double.BYTES)
+		    drain ();
+
+		final int n = Math.min (length - offset,
+					dataBuffer.remaining () / Double.BYTES);
+		dataBuffer.asDoubleBuffer ().put (values, offset, n);
+		dataBuffer.position (dataBuffer.position () + n * Double.BYTES);
+		offset += n;
+	    }
+    }
+
+    private void drain ()
+	throws IOException
+    {
+	dataBuffer.flip ();
+	while (dataBuffer.hasRemaining ())
+	    dataIn.write (dataBuffer);
+	dataBuffer.clear ();
     }
 
-    private void logOutput ()
+    private void flush ()
 	throws IOException
     {
-	while (perr.ready ())
-	    log.warning (perr.readLine ());
+	drain ();
+	rawIn.flush ();
+    }
+
+    // Takes the oldest line of output not yet taken, waiting up to timeout
+    // for one to arrive. Only the most recent OUTPUT_QUEUE_SIZE lines are
+    // kept.
+    public OutputLine pollOutput (final long timeout, final TimeUnit unit)
+	throws InterruptedException
+    {
+	return output.poll (timeout, unit);
+    }
+
+    // Called from the reader threads for every line of output
+    public void addOutputListener (final Consumer<OutputLine> listener)
+    {
+	outputListeners.add (listener);
+    }
+
+    public void removeOutputListener (final Consumer<OutputLine> listener)
+    {
+	outputListeners.remove (listener);
+    }
+
+    private void startReader (final BufferedReader reader, final OutputLine.Stream stream)
+    {
+	final Thread thread = new Thread (() -> drain (reader, stream),
+					  log.getName () + "-" + stream.toString ().toLowerCase ());
+	thread.setDaemon (true);
+	thread.start ();
+    }
+
+    private void drain (final BufferedReader reader, final OutputLine.Stream stream)
+    {
+	try
+	    {
+		String text;
+		while ((text = reader.readLine ()) != null)
+		    publish (new OutputLine (stream, text));
+	    }
+	catch (final IOException e)
+	    {
+		log.warning ("Stopped reading gnuplot " + stream + ": " + e.getMessage ());
+	    }
+
+	// Nothing more can be acknowledged once either stream has ended
+	failPending ("gnuplot exited.");
+    }
+
+    // gnuplot prints to stderr unless told to "set print", so the
+    // acknowledgements are looked for on both streams
+    private void publish (final OutputLine line)
+    {
+	final Matcher ack = ACKNOWLEDGEMENT.matcher (line.getText ());
+	if (ack.matches ())
+	    {
+		acknowledged (Long.parseLong (ack.group (1)), line.getTime ());
+		return;
+	    }
+
+	if (line.getStream () == OutputLine.Stream.STDERR)
+	    log.warning (line.getText ());
+	else
+	    log.info (line.getText ());
+
+	// Drop the oldest line rather than block the reader
+	while (!output.offer (line))
+	    output.poll ();
 
-	while (pout.ready ())
-	    log.info (pout.readLine ());
+	for (final Consumer<OutputLine> listener: outputListeners)
+	    listener.accept (line);
     }
 }
-	
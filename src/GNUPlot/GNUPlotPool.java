@@ -0,0 +1,136 @@
+package GNUPlot;
+
+import java.io.IOException;
+import java.util.List;
+import java.util.ArrayList;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+// A fixed number of gnuplot processes leased out to render jobs, so jobs
+// can run on as many cores as there are processes. Processes are spawned
+// on first demand and reused; one that has died is dropped when it is
+// leased or released and a fresh one takes its place.
+public final class GNUPlotPool
+{
+    public interface Job<T>
+    {
+	T run (GNUPlot gnuplot)
+	    throws IOException;
+    }
+
+    private static final long RETRY_MILLISECONDS = 100;
+
+    private final String sessionName;
+    private final int size;
+    private final BlockingQueue<GNUPlot> idle;
+    private final List<GNUPlot> all;
+    private boolean closed;
+
+    public GNUPlotPool (final String sessionName)
+    {
+	this (sessionName, Runtime.getRuntime ().availableProcessors ());
+    }
+
+    public GNUPlotPool (final String sessionName, final int size)
+    {
+	if (size < 1)
+	    throw new IllegalArgumentException ("A pool needs at least one process.");
+
+	this.sessionName = sessionName;
+	this.size = size;
+	idle = new LinkedBlockingQueue<> ();
+	all = new ArrayList<> ();
+	closed = false;
+    }
+
+    public int getSize ()
+    {
+	return size;
+    }
+
+    // Waits for a live process, spawning one if the pool is not full yet
+    public GNUPlot lease ()
+	throws IOException, InterruptedException
+    {
+	for (;;)
+	    {
+		GNUPlot gnuplot = idle.poll ();
+		if (gnuplot == null)
+		    gnuplot = spawnIfRoom ();
+		// Wake up now and then in case a process died and its slot is free
+		if (gnuplot == null)
+		    gnuplot = idle.poll (RETRY_MILLISECONDS, TimeUnit.MILLISECONDS);
+		if (gnuplot == null)
+		    continue;
+
+		if (gnuplot.isAlive ())
+		    return gnuplot;
+
+		discard (gnuplot);
+	    }
+    }
+
+    public void release (final GNUPlot gnuplot)
+    {
+	synchronized (this)
+	    {
+		if (closed)
+		    {
+			gnuplot.close ();
+			return;
+		    }
+	    }
+
+	if (gnuplot.isAlive ())
+	    idle.add (gnuplot);
+	else
+	    discard (gnuplot);
+    }
+
+    public <T> T run (final Job<T> job)
+	throws IOException, InterruptedException
+    {
+	final GNUPlot gnuplot = lease ();
+	try
+	    {
+		return job.run (gnuplot);
+	    }
+	finally
+	    {
+		release (gnuplot);
+	    }
+    }
+
+    public synchronized void close ()
+    {
+	closed = true;
+	for (final GNUPlot gnuplot: all)
+	    gnuplot.close ();
+	all.clear ();
+	idle.clear ();
+    }
+
+    private synchronized GNUPlot spawnIfRoom ()
+	throws IOException
+    {
+	if (closed)
+	    throw new IOException ("The gnuplot pool is closed.");
+	else if (all.size () >= size)
+	    return null;
+
+	final GNUPlot gnuplot = new GNUPlot (sessionName);
+	all.add (gnuplot);
+	return gnuplot;
+    }
+
+    // Frees the slot of a dead process for a fresh one
+    private void discard (final GNUPlot gnuplot)
+    {
+	gnuplot.close ();
+	synchronized (this)
+	    {
+		all.remove (gnuplot);
+	    }
+    }
+}
@@ -0,0 +1,100 @@
+package GNUPlot;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+// Counts latencies in logarithmic buckets, each power of two split into
+// SUB_BUCKETS linear ones, so percentiles are within about 6% of the real
+// value at any scale. Safe to record into from several threads.
+public final class LatencyHistogram
+{
+    private static final int SUB_BITS = 4;
+    private static final int SUB_BUCKETS = 1 << SUB_BITS;
+
+    private final AtomicLongArray counts;
+    private final AtomicLong count;
+    private final AtomicLong max;
+
+    public LatencyHistogram ()
+    {
+	counts = new AtomicLongArray ((Long.SIZE - SUB_BITS) * SUB_BUCKETS);
+	count = new AtomicLong ();
+	max = new AtomicLong ();
+    }
+
+    public void record (final long nanos)
+    {
+	final long value = Math.max (0, nanos);
+	counts.incrementAndGet (index (value));
+	count.incrementAndGet ();
+	max.accumulateAndGet (value, Math::max);
+    }
+
+    public long getCount ()
+    {
+	return count.get ();
+    }
+
+    public long getMax ()
+    {
+	return max.get ();
+    }
+
+    // The smallest bucket bound that at least fraction of the recorded
+    // latencies fall under, in nanoseconds
+    public long getPercentile (final double fraction)
+    {
+	final long total = count.get ();
+	if (total == 0)
+	    return 0;
+
+	final long target = Math.max (1, (long) Math.ceil (fraction * total));
+	long seen = 0;
+	for (int i = 0; i < counts.length (); ++i)
+	    {
+		seen += counts.get (i);
+		if (seen >= target)
+		    return Math.min (upperBound (i), max.get ());
+	    }
+
+	return max.get ();
+    }
+
+    public void reset ()
+    {
+	for (int i = 0; i < counts.length (); ++i)
+	    counts.set (i, 0);
+	count.set (0);
+	max.set (0);
+    }
+
+    public String toString ()
+    {
+	return String.format ("count=%d p50=%.3fms p99=%.3fms max=%.3fms",
+			      getCount (),
+			      getPercentile (0.50) / 1e6,
+			      getPercentile (0.99) / 1e6,
+			      getMax () / 1e6);
+    }
+
+    private static int index (final long value)
+    {
+	if (value < SUB_BUCKETS)
+	    return (int) value;
+
+	final int magnitude = Long.SIZE - 1 - Long.numberOfLeadingZeros (value);
+	final int sub = (int) (value >>> (magnitude - SUB_BITS)) & (SUB_BUCKETS - 1);
+	return (magnitude - SUB_BITS + 1) * SUB_BUCKETS + sub;
+    }
+
+    private static long upperBound (final int index)
+    {
+	if (index < SUB_BUCKETS)
+	    return index;
+
+	final int magnitude = index / SUB_BUCKETS + SUB_BITS - 1;
+	final long sub = index % SUB_BUCKETS;
+	final long low = (1L << magnitude) | (sub << (magnitude - SUB_BITS));
+	return low + (1L << (magnitude - SUB_BITS)) - 1;
+    }
+}
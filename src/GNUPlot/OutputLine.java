@@ -0,0 +1,42 @@
+package GNUPlot;
+
+// A line gnuplot wrote to its standard output or standard error.
+public final class OutputLine
+{
+    public enum Stream
+    {
+	STDOUT, STDERR
+    }
+
+    private Stream stream;
+    private String text;
+    private long time;
+
+    public OutputLine (final Stream stream, final String text)
+    {
+	this.stream = stream;
+	this.text = text;
+	time = System.nanoTime ();
+    }
+
+    public Stream getStream ()
+    {
+	return stream;
+    }
+
+    public String getText ()
+    {
+	return text;
+    }
+
+    // When the line was read, in System.nanoTime () units
+    public long getTime ()
+    {
+	return time;
+    }
+
+    public String toString ()
+    {
+	return stream + ": " + text;
+    }
+}
@@ -0,0 +1,140 @@
+package Geometry;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.PriorityQueue;
+import java.util.Comparator;
+import java.util.function.DoubleUnaryOperator;
+
+// Samples a function over [from, to] starting from a uniform grid and
+// repeatedly splitting the segment whose midpoint strays furthest from its
+// chord, so flat stretches keep few points while bends and poles get many.
+// Stops when every segment is within tolerance (relative to the height of
+// the curve), a segment reaches maxDepth, or the point budget is spent.
+// Every point evaluated is kept, the midpoints of the segments that were
+// not split included, so the budget counts evaluations.
+public final class AdaptiveSampler
+{
+    private final int initialSegments;
+    private final int maxDepth;
+    private final int maxPoints;
+    private final double tolerance;
+
+    public AdaptiveSampler (final int initialSegments,
+			    final int maxDepth,
+			    final int maxPoints,
+			    final double tolerance)
+    {
+	if (initialSegments < 1 || maxPoints <= 2 * initialSegments)
+	    throw new IllegalArgumentException ("maxPoints must exceed twice initialSegments.");
+
+	this.initialSegments = initialSegments;
+	this.maxDepth = maxDepth;
+	this.maxPoints = maxPoints;
+	this.tolerance = tolerance;
+    }
+
+    public Curve sample (final String title,
+			 final DoubleUnaryOperator function,
+			 final double from,
+			 final double to)
+    {
+	final double xs[] = new double[initialSegments + 1];
+	final double ys[] = new double[initialSegments + 1];
+	double low = Double.POSITIVE_INFINITY, high = Double.NEGATIVE_INFINITY;
+	for (int i = 0; i <= initialSegments; ++i)
+	    {
+		xs[i] = (i == initialSegments) ? to : from + (to - from) * i / initialSegments;
+		ys[i] = function.applyAsDouble (xs[i]);
+		if (Double.isFinite (ys[i]))
+		    {
+			low = Math.min (low, ys[i]);
+			high = Math.max (high, ys[i]);
+		    }
+	    }
+	final double scale = (high > low) ? high - low : 1;
+
+	final PriorityQueue<Segment> toSplit =
+	    new PriorityQueue<> (Comparator.comparingDouble ((Segment s) -> -s.error));
+	final List<Segment> done = new ArrayList<> ();
+	for (int i = 0; i < initialSegments; ++i)
+	    schedule (new Segment (function, xs[i], ys[i], xs[i + 1], ys[i + 1], 0, scale),
+		      toSplit, done);
+
+	// The ends and midpoint of every segment; a split evaluates the
+	// midpoints of its two halves
+	int points = 2 * initialSegments + 1;
+	while (!toSplit.isEmpty () && points + 2 <= maxPoints)
+	    {
+		final Segment s = toSplit.poll ();
+		schedule (new Segment (function, s.x0, s.y0, s.xm, s.ym, s.depth + 1, scale),
+			  toSplit, done);
+		schedule (new Segment (function, s.xm, s.ym, s.x1, s.y1, s.depth + 1, scale),
+			  toSplit, done);
+		points += 2;
+	    }
+	done.addAll (toSplit);
+	done.sort (Comparator.comparingDouble ((Segment s) -> s.x0));
+
+	final double result[] = new double[2 * (2 * done.size () + 1)];
+	int i = 0;
+	for (final Segment s: done)
+	    {
+		result[i++] = s.x0;
+		result[i++] = s.y0;
+		result[i++] = s.xm;
+		result[i++] = s.ym;
+	    }
+	final Segment last = done.get (done.size () - 1);
+	result[i++] = last.x1;
+	result[i++] = last.y1;
+
+	return new Curve (title, result);
+    }
+
+    private void schedule (final Segment segment,
+			   final PriorityQueue<Segment> toSplit,
+			   final List<Segment> done)
+    {
+	if (segment.depth < maxDepth && segment.error > tolerance)
+	    toSplit.add (segment);
+	else
+	    done.add (segment);
+    }
+
+    private static final class Segment
+    {
+	final double x0, y0, x1, y1;
+	final double xm, ym;
+	final int depth;
+	final double error;
+
+	Segment (final DoubleUnaryOperator function,
+		 final double x0,
+		 final double y0,
+		 final double x1,
+		 final double y1,
+		 final int depth,
+		 final double scale)
+	{
+	    this.x0 = x0;
+	    this.y0 = y0;
+	    this.x1 = x1;
+	    this.y1 = y1;
+	    this.depth = depth;
+
+	    xm = (x0 + x1) / 2;
+	    ym = function.applyAsDouble (xm);
+
+	    final boolean finite = Double.isFinite (y0) && Double.isFinite (ym)
+		&& Double.isFinite (y1);
+	    if (finite)
+		error = Math.abs (ym - (y0 + y1) / 2) / scale;
+	    else
+		// Split around the edges of the domain and poles, but never
+		// keep splitting where the function is undefined throughout
+		error = (Double.isFinite (y0) || Double.isFinite (ym) || Double.isFinite (y1))
+		    ? Double.POSITIVE_INFINITY : 0;
+	}
+    }
+}
@@ -0,0 +1,44 @@
+package Geometry;
+
+// Samples (x, f(x)) of a function stored as interleaved x, y doubles in
+// increasing x.
+public final class Curve
+{
+    private final String title;
+    private final double points[];
+
+    public Curve (final String title, final double points[])
+    {
+	if (points.length % 2 != 0)
+	    throw new IllegalArgumentException ("points must hold (x, y) pairs.");
+
+	this.title = title;
+	this.points = points;
+    }
+
+    public String getTitle ()
+    {
+	return title;
+    }
+
+    public int size ()
+    {
+	return points.length / 2;
+    }
+
+    public double getX (final int i)
+    {
+	return points[2 * i];
+    }
+
+    public double getY (final int i)
+    {
+	return points[2 * i + 1];
+    }
+
+    // Not copied, like Mesh.getVertices ()
+    public double[] getPoints ()
+    {
+	return points;
+    }
+}
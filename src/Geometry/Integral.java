@@ -0,0 +1,68 @@
+package Geometry;
+
+// The result of Integrator.integrate: the value, an estimate of its
+// absolute error, how many subintervals it took and whether it met the
+// tolerance. One that did not, say because the integral diverges, has no
+// value worth showing.
+public final class Integral
+{
+    private final double value;
+    private final double error;
+    private final int intervals;
+    private final boolean converged;
+
+    public Integral (final double value, final double error, final int intervals)
+    {
+	this (value, error, intervals, true);
+    }
+
+    public Integral (final double value,
+		     final double error,
+		     final int intervals,
+		     final boolean converged)
+    {
+	this.value = value;
+	this.error = error;
+	this.intervals = intervals;
+	this.converged = converged;
+    }
+
+    public double getValue ()
+    {
+	return value;
+    }
+
+    public double getError ()
+    {
+	return error;
+    }
+
+    public int getIntervals ()
+    {
+	return intervals;
+    }
+
+    public boolean isConverged ()
+    {
+	return converged;
+    }
+
+    public Integral plus (final Integral other)
+    {
+	return new Integral (value + other.value, error + other.error, intervals + other.intervals,
+			     converged && other.converged);
+    }
+
+    public Integral times (final double factor)
+    {
+	return new Integral (value * factor, error * Math.abs (factor), intervals, converged);
+    }
+
+    public String toString ()
+    {
+	if (!converged)
+	    return "did not converge (unbounded?)";
+
+	return String.format ("%.10g +/- %.2g", value, error);
+    }
+}
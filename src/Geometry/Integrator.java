@@ -0,0 +1,148 @@
+package Geometry;
+
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.DoubleUnaryOperator;
+
+// Adaptive Gauss-Kronrod quadrature. Each interval is integrated with the
+// 15 point Kronrod rule, and the difference from the embedded 7 point
+// Gauss rule is taken as its error. Intervals whose error is more than
+// their share of the tolerance are halved, and the halves are integrated
+// in parallel, so the functions passed in must be safe to call from
+// several threads (compiled kernels are).
+public final class Integrator
+{
+    // Nodes of the 15 point Kronrod rule on [-1, 1], from the outside in;
+    // the odd ones are also the 7 point Gauss nodes
+    private static final double NODES[] = {
+	0.991455371120812639206854697526329,
+	0.949107912342758524526189684047851,
+	0.864864423359769072789712788640926,
+	0.741531185599394439863864773280788,
+	0.586087235467691130294144845693013,
+	0.405845151377397166906606412076961,
+	0.207784955007898467600689403773245,
+	0.000000000000000000000000000000000
+    };
+    private static final double KRONROD_WEIGHTS[] = {
+	0.022935322010529224963732008058970,
+	0.063092092629978553290700663189204,
+	0.104790010322250183839876322541518,
+	0.140653259715525918745189590510238,
+	0.169004726639267902826583426598550,
+	0.190350578064785409913256402421014,
+	0.204432940075298892414161999234649,
+	0.209482141084727828012999174891714
+    };
+    private static final double GAUSS_WEIGHTS[] = {
+	0.129484966168869693270611432679082,
+	0.279705391489276667901467771423780,
+	0.381830050505118944950369775488975,
+	0.417959183673469387755102040816327
+    };
+
+    // Errors below this are never worth another split
+    private static final double ABSOLUTE_TOLERANCE = 1e-13;
+
+    private final ForkJoinPool pool;
+    private final double tolerance;
+    private final int maxDepth;
+
+    public Integrator (final double tolerance, final int maxDepth)
+    {
+	this (ForkJoinPool.commonPool (), tolerance, maxDepth);
+    }
+
+    // tolerance is relative to the size of the integral
+    public Integrator (final ForkJoinPool pool, final double tolerance, final int maxDepth)
+    {
+	this.pool = pool;
+	this.tolerance = tolerance;
+	this.maxDepth = maxDepth;
+    }
+
+    public Integral integrate (final DoubleUnaryOperator f, final double from, final double to)
+    {
+	if (from == to)
+	    return new Integral (0, 0, 0);
+
+	final double estimate[] = kronrod (f, from, to);
+	final double target = Math.max (tolerance * Math.abs (estimate[0]), ABSOLUTE_TOLERANCE);
+	final Integral result =
+	    pool.invoke (new Interval (f, from, to, estimate, target / Math.abs (to - from), 0));
+
+	// Intervals left at maxDepth are harmless if the total is still
+	// within tolerance, e.g. around a jump
+	if (result.isConverged ()
+	    || !Double.isFinite (result.getValue () + result.getError ())
+	    || result.getError () > Math.max (tolerance * Math.abs (result.getValue ()),
+					      ABSOLUTE_TOLERANCE))
+	    return result;
+
+	return new Integral (result.getValue (), result.getError (), result.getIntervals ());
+    }
+
+    // The Kronrod value of the integral over [from, to] and its error
+    private static double[] kronrod (final DoubleUnaryOperator f, final double from, final double to)
+    {
+	final double center = (from + to) / 2;
+	final double halfWidth = (to - from) / 2;
+
+	final double middle = f.applyAsDouble (center);
+	double kronrod = middle * KRONROD_WEIGHTS[7];
+	double gauss = middle * GAUSS_WEIGHTS[3];
+	for (int i = 0; i < 7; ++i)
+	    {
+		final double offset = halfWidth * NODES[i];
+		final double sum = f.applyAsDouble (center - offset) + f.applyAsDouble (center + offset);
+		kronrod += KRONROD_WEIGHTS[i] * sum;
+		if (i % 2 == 1)
+		    gauss += GAUSS_WEIGHTS[i / 2] * sum;
+	    }
+
+	return new double[] { kronrod * halfWidth, Math.abs ((kronrod - gauss) * halfWidth) };
+    }
+
+    private final class Interval extends RecursiveTask<Integral>
+    {
+	private static final long serialVersionUID = 1L;
+
+	private final DoubleUnaryOperator f;
+	private final double from, to;
+	private final double estimate[];
+	private final double density;
+	private final int depth;
+
+	// density is the error allowed per unit of width
+	Interval (final DoubleUnaryOperator f,
+		  final double from, final double to,
+		  final double estimate[],
+		  final double density,
+		  final int depth)
+	{
+	    this.f = f;
+	    this.from = from;
+	    this.to = to;
+	    this.estimate = estimate;
+	    this.density = density;
+	    this.depth = depth;
+	}
+
+	protected Integral compute ()
+	{
+	    if (estimate[1] <= density * Math.abs (to - from))
+		return new Integral (estimate[0], estimate[1], 1);
+	    // Splitting cannot fix a NaN or infinity
+	    else if (depth == maxDepth || !Double.isFinite (estimate[0] + estimate[1]))
+		return new Integral (estimate[0], estimate[1], 1, false);
+
+	    final double middle = (from + to) / 2;
+	    final Interval left = new Interval (f, from, middle, kronrod (f, from, middle),
+						density, depth + 1);
+	    final Interval right = new Interval (f, middle, to, kronrod (f, middle, to),
+						 density, depth + 1);
+	    left.fork ();
+	    return right.compute ().plus (left.join ());
+	}
+    }
+}
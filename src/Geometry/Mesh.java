@@ -0,0 +1,45 @@
+package Geometry;
+
+// A uCount by vCount grid of vertices stored as interleaved x, y, z
+// doubles, row by row in u.
+public final class Mesh
+{
+    private final String title;
+    private final int uCount;
+    private final int vCount;
+    private final double vertices[];
+
+    public Mesh (final String title, final int uCount, final int vCount)
+    {
+	this.title = title;
+	this.uCount = uCount;
+	this.vCount = vCount;
+	vertices = new double[3 * uCount * vCount];
+    }
+
+    public String getTitle ()
+    {
+	return title;
+    }
+
+    public int getUCount ()
+    {
+	return uCount;
+    }
+
+    public int getVCount ()
+    {
+	return vCount;
+    }
+
+    // Not copied: the mesh is meant to be filled and streamed in place
+    public double[] getVertices ()
+    {
+	return vertices;
+    }
+
+    public int index (final int u, final int v)
+    {
+	return 3 * (u * vCount + v);
+    }
+}
@@ -0,0 +1,127 @@
+package Geometry;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+// Samples surfaces of revolution of f about the line y = c:
+// u, c+(f(u)-c)*cos(v), (f(u)-c)*sin(v) for v in [0, 2pi], with a row for
+// each point of an already sampled Curve, such as AdaptiveSampler's. Rows
+// are split into strips and filled in parallel.
+public final class MeshGenerator
+{
+    private static final int STRIP = 16;
+
+    private final ForkJoinPool pool;
+    private final int vCount;
+    private final double cosV[];
+    private final double sinV[];
+
+    public MeshGenerator (final int vCount)
+    {
+	this (ForkJoinPool.commonPool (), vCount);
+    }
+
+    public MeshGenerator (final ForkJoinPool pool, final int vCount)
+    {
+	if (vCount < 2)
+	    throw new IllegalArgumentException ("A mesh needs at least two samples in v.");
+
+	this.pool = pool;
+	this.vCount = vCount;
+
+	cosV = new double[vCount];
+	sinV = new double[vCount];
+	for (int v = 0; v < vCount; ++v)
+	    {
+		final double angle = 2 * Math.PI * v / (vCount - 1);
+		cosV[v] = Math.cos (angle);
+		sinV[v] = Math.sin (angle);
+	    }
+    }
+
+    // Axes are looked up by curve title
+    public List<Mesh> generate (final List<Curve> curves, final Map<String, Double> axes)
+    {
+	final List<Mesh> meshes = new ArrayList<> ();
+	final List<Strip> strips = new ArrayList<> ();
+	for (final Curve curve: curves)
+	    {
+		final Mesh mesh = new Mesh (curve.getTitle (), curve.size (), vCount);
+		meshes.add (mesh);
+		strips.add (new Strip (mesh, curve, axes.get (curve.getTitle ()),
+				       0, curve.size ()));
+	    }
+
+	runAll (strips);
+	return meshes;
+    }
+
+    private void runAll (final List<Strip> strips)
+    {
+	pool.invoke (new RecursiveAction ()
+	    {
+		protected void compute ()
+		{
+		    invokeAll (strips);
+		}
+	    });
+    }
+
+    private final class Strip extends RecursiveAction
+    {
+	private static final long serialVersionUID = 1L;
+
+	private final Mesh mesh;
+	private final Curve curve;
+	private final double axis;
+	private final int from;
+	private final int to;
+
+	Strip (final Mesh mesh,
+	       final Curve curve,
+	       final double axis,
+	       final int from,
+	       final int to)
+	{
+	    this.mesh = mesh;
+	    this.curve = curve;
+	    this.axis = axis;
+	    this.from = from;
+	    this.to = to;
+	}
+
+	protected void compute ()
+	{
+	    if (to - from > STRIP)
+		{
+		    final int middle = (from + to) >>> 1;
+		    invokeAll (new Strip (mesh, curve, axis, from, middle),
+			       new Strip (mesh, curve, axis, middle, to));
+		    return;
+		}
+
+	    for (int u = from; u < to; ++u)
+		fillRow (mesh, u, curve.getX (u), curve.getY (u), axis);
+	}
+    }
+
+    private void fillRow (final Mesh mesh,
+			  final int u,
+			  final double x,
+			  final double y,
+			  final double axis)
+    {
+	final double vertices[] = mesh.getVertices ();
+	final double radius = y - axis;
+	int i = mesh.index (u, 0);
+	for (int v = 0; v < vCount; ++v)
+	    {
+		vertices[i++] = x;
+		vertices[i++] = radius * cosV[v] + axis;
+		vertices[i++] = radius * sinV[v];
+	    }
+    }
+}
@@ -0,0 +1,56 @@
+package Geometry;
+
+import java.util.function.DoubleUnaryOperator;
+
+// Volume and surface area of the solids rotate () draws. A function f with
+// axis c is turned about the line y = c into circles of radius |f(u)-c|,
+// as in MeshGenerator, so these measure exactly the surface on screen.
+public final class Revolution
+{
+    private final Integrator integrator;
+
+    public Revolution (final Integrator integrator)
+    {
+	this.integrator = integrator;
+    }
+
+    // Disk method: pi r^2 over [from, to]
+    public Integral volume (final DoubleUnaryOperator f,
+			    final double axis,
+			    final double from,
+			    final double to)
+    {
+	return integrator.integrate (u -> {
+		final double radius = f.applyAsDouble (u) - axis;
+		return radius * radius;
+	    }, from, to).times (Math.PI);
+    }
+
+    // Washer method: the volume between the solids of two functions
+    // turned about the same axis
+    public Integral volume (final DoubleUnaryOperator outer,
+			    final DoubleUnaryOperator inner,
+			    final double axis,
+			    final double from,
+			    final double to)
+    {
+	return integrator.integrate (u -> {
+		final double r = outer.applyAsDouble (u) - axis;
+		final double s = inner.applyAsDouble (u) - axis;
+		return Math.abs (r * r - s * s);
+	    }, from, to).times (Math.PI);
+    }
+
+    // 2 pi |r| sqrt(1 + f'^2) over [from, to], given f' as derivative
+    public Integral surfaceArea (final DoubleUnaryOperator f,
+				 final DoubleUnaryOperator derivative,
+				 final double axis,
+				 final double from,
+				 final double to)
+    {
+	return integrator.integrate (u -> {
+		final double slope = derivative.applyAsDouble (u);
+		return Math.abs (f.applyAsDouble (u) - axis) * Math.sqrt (1 + slope * slope);
+	    }, from, to).times (2 * Math.PI);
+    }
+}
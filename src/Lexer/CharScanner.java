@@ -0,0 +1,212 @@
+package Lexer;
+
+import java.util.Deque;
+import java.util.ArrayDeque;
+
+// Tokenizes a CharSequence in place, following the same rules as
+// TokenStream, which reads bytes: only ASCII digits are digits, and a '.'
+// with no digits is an operator rather than a number nothing can parse. A
+// token is just its type and its [start, end) offsets in the input and
+// pushback is a rewind, so scanning with next () allocates nothing. read ()
+// builds Tokens for the parser; operators and terminators come from a
+// shared table, so only names and numbers allocate.
+final public class CharScanner implements TokenSource
+{
+    private static final Token OPERATORS[] = new Token[128];
+    private static final Token END = new Token (Token.Type.TERMINATOR, "");
+    private static final Token SEMICOLON = new Token (Token.Type.TERMINATOR, ";");
+
+    static
+    {
+	for (char c = 0; c < OPERATORS.length; ++c)
+	    OPERATORS[c] = new Token (Token.Type.OPERATOR, Character.toString (c));
+    }
+
+    private CharSequence in;
+    private int position;
+    private Token.Type type;
+    private int start;
+    private int end;
+    private int previousPosition;
+    private boolean pushedBack;
+    // The Token read () returned last, and Tokens pushed back that a rewind
+    // cannot bring back, newest first
+    private Token lastRead;
+    private Deque<Token> pushedTokens;
+
+    public CharScanner (final CharSequence in)
+    {
+	this.in = in;
+	position = 0;
+	previousPosition = 0;
+	pushedBack = false;
+	pushedTokens = new ArrayDeque<> ();
+    }
+
+    public CharScanner (final char in[])
+    {
+	this (java.nio.CharBuffer.wrap (in));
+    }
+
+    // Scans the next token and returns its type
+    public Token.Type next ()
+    {
+	previousPosition = position;
+	pushedBack = false;
+
+	while (position < in.length () && Character.isWhitespace (in.charAt (position)))
+	    ++position;
+
+	start = position;
+	if (position == in.length ())
+	    return type = Token.Type.TERMINATOR;
+
+	final char c = in.charAt (position++);
+	if (c == ';')
+	    type = Token.Type.TERMINATOR;
+	else if (isDigit (c) || (c == '.' && position < in.length ()
+				 && isDigit (in.charAt (position))))
+	    {
+		position = skipDigits (c == '.' ? position - 1 : position);
+		if (position < in.length () && in.charAt (position) == '.')
+		    position = skipDigits (position + 1);
+		type = Token.Type.NUMBER;
+	    }
+	else if (Character.isAlphabetic (c))
+	    {
+		while (position < in.length ()
+		       && (Character.isAlphabetic (in.charAt (position))
+			   || isDigit (in.charAt (position))))
+		    ++position;
+		type = Token.Type.NAME;
+	    }
+	else
+	    type = Token.Type.OPERATOR;
+
+	end = position;
+	return type;
+    }
+
+    // Makes the next call to next () scan the current token again
+    public void pushBack ()
+    {
+	if (pushedBack)
+	    throw new IllegalStateException ("Only one token can be pushed back.");
+
+	position = previousPosition;
+	pushedBack = true;
+    }
+
+    public Token.Type getType ()
+    {
+	return type;
+    }
+
+    public int getStart ()
+    {
+	return start;
+    }
+
+    public int getEnd ()
+    {
+	return end;
+    }
+
+    public char getOperator ()
+    {
+	return in.charAt (start);
+    }
+
+    // The value of the current NUMBER token, without building its text
+    public double getNumber ()
+    {
+	// Exact when the digits fit in a double's mantissa and the scale is
+	// an exactly representable power of ten
+	long mantissa = 0;
+	int digits = 0, scale = 0;
+	boolean fraction = false;
+	for (int i = start; i < end; ++i)
+	    {
+		final char c = in.charAt (i);
+		if (c == '.')
+		    {
+			fraction = true;
+			continue;
+		    }
+
+		mantissa = 10 * mantissa + (c - '0');
+		if (fraction)
+		    ++scale;
+		if (mantissa != 0 && ++digits > 15)
+		    return Double.parseDouble (in.subSequence (start, end).toString ());
+	    }
+
+	if (scale > 22)
+	    return Double.parseDouble (in.subSequence (start, end).toString ());
+
+	return mantissa / POWERS_OF_TEN[scale];
+    }
+
+    public Token read ()
+    {
+	if (!pushedTokens.isEmpty ())
+	    {
+		lastRead = null;
+		return pushedTokens.pop ();
+	    }
+
+	switch (next ())
+	    {
+	    case TERMINATOR:
+		lastRead = (start == end) ? END : SEMICOLON;
+		break;
+	    case OPERATOR:
+		final char c = getOperator ();
+		lastRead = (c < OPERATORS.length)
+		    ? OPERATORS[c] : new Token (Token.Type.OPERATOR, Character.toString (c));
+		break;
+	    default:
+		lastRead = new Token (type, in.subSequence (start, end).toString ());
+		break;
+	    }
+	return lastRead;
+    }
+
+    // Converts in place when token is the one just read, which is how the
+    // parser asks
+    public double getNumber (final Token token)
+    {
+	if (token == lastRead && type == Token.Type.NUMBER)
+	    return getNumber ();
+	return Double.parseDouble (token.getToken ());
+    }
+
+    // The token just read is rewound, so the offsets of next () stay
+    // right; any other is kept and returned by read () before scanning on
+    public void pushBack (final Token token)
+    {
+	if (token == lastRead && !pushedBack && pushedTokens.isEmpty ())
+	    pushBack ();
+	else
+	    pushedTokens.push (token);
+	lastRead = null;
+    }
+
+    private int skipDigits (int i)
+    {
+	while (i < in.length () && isDigit (in.charAt (i)))
+	    ++i;
+	return i;
+    }
+
+    // Character.isDigit would also take digits of other scripts
+    private static boolean isDigit (final char c)
+    {
+	return c >= '0' && c <= '9';
+    }
+
+    private static final double POWERS_OF_TEN[] = {
+	1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+	1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+}
@@ -0,0 +1,17 @@
+package Lexer;
+
+import java.io.IOException;
+
+public interface TokenSource
+{
+    Token read ()
+	throws IOException;
+
+    void pushBack (Token token);
+
+    // The value of token, a NUMBER read from this source
+    default double getNumber (final Token token)
+    {
+	return Double.parseDouble (token.getToken ());
+    }
+}
@@ -5,7 +5,7 @@ import java.util.ArrayDeque;
 import java.io.InputStream;
 import java.io.IOException;
 
-final public class TokenStream
+final public class TokenStream implements TokenSource
 {
     private InputStream in;
     private Deque<Token> tokenPushBack;
@@ -1,15 +1,72 @@
 package LexerTest;
+import Lexer.CharScanner;
+import Lexer.Token;
 import Lexer.TokenStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
 
+// Prints the tokens TokenStream reads from standard input, along with
+// whatever CharScanner reads differently from the same text, and checks
+// CharScanner's numbers against Double.parseDouble.
 public class LexerTest
 {
+    private static final int NUMBERS = 1000000;
+
     public static void main (final String args[])
 	throws IOException
     {
-	TokenStream in = new TokenStream (System.in);
+	final byte input[] = System.in.readAllBytes ();
+	// One char per byte, so both see the same characters
+	final String text = new String (input, StandardCharsets.ISO_8859_1);
+	final TokenStream in = new TokenStream (new ByteArrayInputStream (input));
+	final CharScanner scanner = new CharScanner (text);
 	for (;;)
-	    System.out.println (in.read ());
+	    {
+		final Token token = in.read ();
+		final Token scanned = scanner.read ();
+		System.out.println (token);
+		if (token.getType () != scanned.getType ()
+		    || !token.getToken ().equals (scanned.getToken ()))
+		    System.out.println ("  CharScanner: " + scanned);
+		else if (scanned.getType () == Token.Type.NUMBER)
+		    check (scanned.getToken (), scanner.getNumber (scanned));
+
+		if (token.getType () == Token.Type.TERMINATOR && token.getToken ().isEmpty ())
+		    break;
+	    }
+
+	// Digits and scales on both sides of where getNumber () stops
+	// converting by itself
+	final Random random = new Random (1);
+	int failures = 0;
+	for (int i = 0; i < NUMBERS; ++i)
+	    {
+		final StringBuilder number = new StringBuilder ();
+		final int digits = 1 + random.nextInt (25);
+		final int point = random.nextInt (digits + 2) - 1;
+		for (int j = 0; j < digits; ++j)
+		    {
+			if (j == point)
+			    number.append ('.');
+			number.append ((char) ('0' + random.nextInt (10)));
+		    }
+		final CharScanner numberScanner = new CharScanner (number);
+		if (!check (number.toString (), numberScanner.getNumber (numberScanner.read ())))
+		    ++failures;
+	    }
+	System.out.println ("getNumber: " + (failures == 0 ? "ok" : failures + " MISMATCHES")
+			    + " (" + NUMBERS + " numbers)");
+    }
+
+    private static boolean check (final String number, final double value)
+    {
+	final double expected = Double.parseDouble (number);
+	if (Double.compare (expected, value) == 0)
+	    return true;
+
+	System.out.println ("  MISMATCH: " + number + " is " + expected + ", not " + value);
+	return false;
     }
 }
-		
@@ -0,0 +1,169 @@
+package Parser;
+
+import Lexer.CharScanner;
+import Lexer.Token;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.io.IOException;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+
+// Parses files of ';'-terminated expressions. The file is memory mapped in
+// chunks that end on a terminator, and the chunks are parsed in parallel,
+// each by its own CharScanner reading the mapped bytes in place. A bad
+// expression is reported with its offset and parsing resumes after its
+// terminator, so one file can hold any number of errors.
+public final class BulkParser
+{
+    private static final int CHUNK = 4 << 20;
+    private static final int WINDOW = 64 << 10;
+
+    private final ForkJoinPool pool;
+
+    public BulkParser ()
+    {
+	this (ForkJoinPool.commonPool ());
+    }
+
+    public BulkParser (final ForkJoinPool pool)
+    {
+	this.pool = pool;
+    }
+
+    public List<ParsedExpression> parse (final Path file)
+	throws IOException
+    {
+	try (final FileChannel channel = FileChannel.open (file, StandardOpenOption.READ))
+	    {
+		final long size = channel.size ();
+
+		// Split just after the first terminator past every CHUNK bytes
+		final List<ForkJoinTask<List<ParsedExpression>>> tasks = new ArrayList<> ();
+		long start = 0;
+		while (start < size)
+		    {
+			final long end = nextTerminator (channel, Math.min (start + CHUNK, size) - 1, size);
+			final MappedByteBuffer bytes =
+			    channel.map (FileChannel.MapMode.READ_ONLY, start, end - start);
+			final long base = start;
+			tasks.add (ForkJoinTask.adapt (() -> parse (new ByteChars (bytes), base)));
+			start = end;
+		    }
+
+		final List<ParsedExpression> parsed = new ArrayList<> ();
+		for (final ForkJoinTask<List<ParsedExpression>> task: tasks)
+		    pool.execute (task);
+		for (final ForkJoinTask<List<ParsedExpression>> task: tasks)
+		    parsed.addAll (task.join ());
+		return parsed;
+	    }
+    }
+
+    // Parses every expression in one chunk; offsets are relative to base
+    static List<ParsedExpression> parse (final CharSequence chunk, final long base)
+	throws IOException
+    {
+	final List<ParsedExpression> parsed = new ArrayList<> ();
+	final CharScanner scanner = new CharScanner (chunk);
+	final ExpressionStream in = new ExpressionStream (scanner);
+
+	while (true)
+	    {
+		// Trailing whitespace is not an expression
+		if (scanner.next () == Token.Type.TERMINATOR && scanner.getStart () == chunk.length ())
+		    return parsed;
+		final int start = scanner.getStart ();
+		scanner.pushBack ();
+
+		try
+		    {
+			final Expression exp = in.read ();
+			parsed.add (new ParsedExpression (base + start, base + scanner.getEnd (), exp));
+		    }
+		catch (final ParseError pe)
+		    {
+			parsed.add (skip (scanner, pe, base, start));
+		    }
+	    }
+    }
+
+    // Moves past the terminator of a bad expression
+    private static ParsedExpression skip (final CharScanner scanner,
+					  final ParseError error,
+					  final long base,
+					  final int start)
+    {
+	// The parser pushed back the token it failed on, if any
+	scanner.next ();
+	final int errorOffset = scanner.getStart ();
+	while (scanner.getType () != Token.Type.TERMINATOR)
+	    scanner.next ();
+
+	return new ParsedExpression (base + start, base + scanner.getEnd (), error, base + errorOffset);
+    }
+
+    // Offset just past the first ';' at or after from, or size if there is none
+    private static long nextTerminator (final FileChannel channel, long from, final long size)
+	throws IOException
+    {
+	while (from < size)
+	    {
+		final MappedByteBuffer window =
+		    channel.map (FileChannel.MapMode.READ_ONLY, from, Math.min (WINDOW, size - from));
+		for (int i = 0; i < window.limit (); ++i)
+		    if (window.get (i) == ';')
+			return from + i + 1;
+		from += window.limit ();
+	    }
+
+	return size;
+    }
+
+    // Mapped bytes read as ISO-8859-1 characters, without copying
+    private static final class ByteChars implements CharSequence
+    {
+	private final MappedByteBuffer bytes;
+	private final int offset;
+	private final int length;
+
+	ByteChars (final MappedByteBuffer bytes)
+	{
+	    this (bytes, 0, bytes.limit ());
+	}
+
+	private ByteChars (final MappedByteBuffer bytes, final int offset, final int length)
+	{
+	    this.bytes = bytes;
+	    this.offset = offset;
+	    this.length = length;
+	}
+
+	public int length ()
+	{
+	    return length;
+	}
+
+	public char charAt (final int index)
+	{
+	    return (char) (bytes.get (offset + index) & 0xff);
+	}
+
+	public CharSequence subSequence (final int start, final int end)
+	{
+	    return new ByteChars (bytes, offset + start, end - start);
+	}
+
+	public String toString ()
+	{
+	    final char chars[] = new char[length];
+	    for (int i = 0; i < length; ++i)
+		chars[i] = charAt (i);
+	    return new String (chars);
+	}
+    }
+}
@@ -3,6 +3,8 @@ package Parser;
 import java.util.List;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.ArrayDeque;
 
 final public class Expression
 {
@@ -100,24 +102,43 @@ final public class Expression
 
     public String toString ()
     {
-	switch (type)
+	// Written out with its own stack of what is left to write, so deep
+	// expressions cannot overflow the Java stack
+	final StringBuilder sb = new StringBuilder ();
+	final Deque<Object> pending = new ArrayDeque<> ();
+	pending.push (this);
+	while (!pending.isEmpty ())
 	    {
-	    case NUMBER:
-		return Double.toString (number);
-	    case NAME:
-		return name;
-	    case OPERATOR:
-		StringBuilder sb = new StringBuilder ("(" + operator);
-		for (final Expression operand: operands)
+		final Object next = pending.pop ();
+		if (next instanceof String)
 		    {
-			sb.append (" ");
-			sb.append (operand.toString ());
+			sb.append ((String) next);
+			continue;
 		    }
-		sb.append (")");
 
-		return sb.toString ();
-	    default:
-		throw new UnsupportedOperationException ("Unknown type: " + type);
+		final Expression exp = (Expression) next;
+		switch (exp.type)
+		    {
+		    case NUMBER:
+			sb.append (Double.toString (exp.number));
+			break;
+		    case NAME:
+			sb.append (exp.name);
+			break;
+		    case OPERATOR:
+			sb.append ("(" + exp.operator);
+			pending.push (")");
+			for (int i = exp.operands.size () - 1; i >= 0; --i)
+			    {
+				pending.push (exp.operands.get (i));
+				pending.push (" ");
+			    }
+			break;
+		    default:
+			throw new UnsupportedOperationException ("Unknown type: " + exp.type);
+		    }
 	    }
+
+	return sb.toString ();
     }
 }
@@ -2,15 +2,17 @@ package Parser;
 
 import java.util.List;
 import java.util.ArrayList;
-import Lexer.TokenStream;
+import java.util.Deque;
+import java.util.ArrayDeque;
+import Lexer.TokenSource;
 import Lexer.Token;
 import java.io.IOException;
 
 final public class ExpressionStream
 {
-    private TokenStream in;
+    private TokenSource in;
 
-    public ExpressionStream (final TokenStream in)
+    public ExpressionStream (final TokenSource in)
     {
 	this.in = in;
     }
@@ -18,151 +20,213 @@ final public class ExpressionStream
     public Expression read ()
 	throws ParseError, IOException
     {
-	return getNthLevelExpression (0);
-    }
+	// Operator precedence parsing with explicit stacks, so the nesting
+	// of the input never shows up as Java stack depth
+	final List<Expression> operands = new ArrayList<> ();
+	final Deque<Pending> operators = new ArrayDeque<> ();
+	boolean expectOperand = true;
 
-    public Expression getNthLevelExpression (final int n)
-	throws ParseError, IOException
-    {
-	Token current;
-	Expression left, right;
-	switch (n)
+	while (true)
 	    {
-	    case 0:
-		// Make sure their is a statement terminator at the end of an expression
-		left = getNthLevelExpression (n + 1);
-		current = in.read ();
-		if (current.getType () != Token.Type.TERMINATOR)
-		    {
-			in.pushBack (current);
-			throw new ParseError ("Expected expression terminator.");
-		    }
+		final Token current = in.read ();
+		final String token = current.getToken ();
 
-		return left;
-	    case 1:
-		// Handle addition and subtraction
-		left = getNthLevelExpression (n + 1);
-		current = in.read ();
-		if (current.getToken ().equals ("+")
-		    || current.getToken ().equals ("-"))
-		    {
-			right = getNthLevelExpression (n);
-			return new Expression (current.getToken (), left, right);
-		    }
-		else
+		if (expectOperand)
 		    {
-			in.pushBack (current);
-			return left;
-		    }
-	    case 2:
-		// Handle multiplication and division
-		left = getNthLevelExpression (n + 1);
-		current = in.read ();
-		if (current.getToken ().equals ("*")
-		    || current.getToken ().equals("-"))
-		    {
-			right = getNthLevelExpression (n);
-			return new Expression (current.getToken (), left, right);
-		    }
-		else
-		    {
-			in.pushBack (current);
-			return left;
-		    }
-	    case 3:
-		// Handle exponentation
-		left = getNthLevelExpression (n + 1);
-		current = in.read ();
-		if (current.getToken ().equals ("^"))
-		    {
-			right = getNthLevelExpression (n);
-			return new Expression (current.getToken (), left, right);
-		    }
-		else
-		    {
-			in.pushBack (current);
-			return left;
-		    }
-	    case 4:
-		// Handle assignment
-		left = getNthLevelExpression (n + 1);
-		current = in.read ();
-		if (current.getToken ().equals ("="))
-		    {
-			right = getNthLevelExpression (1);
-			return new Expression (current.getToken (), left, right);
+			if (current.getType () == Token.Type.NUMBER)
+			    {
+				operands.add (new Expression (number (current)));
+				expectOperand = false;
+			    }
+			else if (current.getType () == Token.Type.NAME)
+			    {
+				// Check if function call
+				final Token peek = in.read ();
+				if (peek.getToken ().equals ("("))
+				    operators.push (new Pending (Pending.CALL, token, operands.size ()));
+				else
+				    {
+					in.pushBack (peek);
+					operands.add (new Expression (token));
+					expectOperand = false;
+				    }
+			    }
+			else if (token.equals ("("))
+			    operators.push (new Pending (Pending.GROUP, token, operands.size ()));
+			else if (token.equals ("-"))
+			    operators.push (new Pending (Pending.PREFIX, token, operands.size ()));
+			else
+			    {
+				in.pushBack (current);
+				if (current.getType () == Token.Type.TERMINATOR)
+				    throw new ParseError ("Unexpected end of expression.");
+				else
+				    throw new ParseError ("Unexpected token " + token);
+			    }
+			continue;
 		    }
-		else
+
+		final int precedence = (current.getType () == Token.Type.OPERATOR)
+		    ? precedence (token) : -1;
+		if (precedence >= 0)
 		    {
-			in.pushBack(current);
-			return left;
+			final int bound;
+			if (token.equals ("="))
+			    bound = ASSIGNMENT_BOUND;
+			else
+			    bound = isRightAssociative (token) ? precedence + 1 : precedence;
+			while (!operators.isEmpty () && operators.peek ().binds (bound))
+			    reduce (operators.pop (), operands);
+			operators.push (new Pending (Pending.INFIX, token, operands.size ()));
+			expectOperand = true;
 		    }
-	    case 5:
-		// Handle the most base cases
-		current = in.read ();
-		// Handle parentheses
-		if (current.getToken ().equals ("("))
+		else if (token.equals (")") || token.equals (","))
 		    {
-			left = getNthLevelExpression (1);
-			current = in.read ();
-			if (!current.getToken ().equals (")"))
+			while (!operators.isEmpty () && operators.peek ().binds (0))
+			    reduce (operators.pop (), operands);
+
+			final Pending open = operators.peek ();
+			if (open == null)
 			    {
 				in.pushBack (current);
-				throw new ParseError ("Expected closing parenthesis.");
+				throw new ParseError ("Expected expression terminator.");
 			    }
-			return left;
-		    }
-		else if (current.getType () == Token.Type.NAME)
-		    {
-			// Check if function call
-		        final Token peek = in.read ();
-			in.pushBack (peek);
-			if (peek.getToken ().equals ("("))
-			    return new Expression (current.getToken (), getParameters ());
+			else if (open.kind == Pending.GROUP)
+			    {
+				if (token.equals (","))
+				    {
+					in.pushBack (current);
+					throw new ParseError ("Expected closing parenthesis.");
+				    }
+				operators.pop ();
+			    }
+			else if (token.equals (","))
+			    expectOperand = true;
 			else
-			    return new Expression (current.getToken ());
+			    {
+				operators.pop ();
+				final List<Expression> parameters =
+				    operands.subList (open.base, operands.size ());
+				final Expression call = new Expression (open.operator, parameters);
+				parameters.clear ();
+				operands.add (call);
+			    }
 		    }
-		else if (current.getType () == Token.Type.NUMBER)
-		    return new Expression (Double.parseDouble (current.getToken ()));
 		else
 		    {
+			while (!operators.isEmpty () && operators.peek ().binds (0))
+			    reduce (operators.pop (), operands);
+
+			// Make sure their is a statement terminator at the end of an expression
 			in.pushBack (current);
-			if (current.getType () == Token.Type.TERMINATOR)
-			    throw new ParseError ("Unexpected end of expression.");
+			if (operators.isEmpty () && current.getType () == Token.Type.TERMINATOR)
+			    {
+				in.read ();
+				return operands.get (0);
+			    }
+			else if (operators.isEmpty ())
+			    throw new ParseError ("Expected expression terminator.");
+			else if (operators.peek ().kind == Pending.GROUP)
+			    throw new ParseError ("Expected closing parenthesis.");
 			else
-			    throw new ParseError ("Unexpected token " + current.getToken ());
+			    throw new ParseError ("Expected close parenthesis.");
 		    }
-	    default:
-		throw new UnsupportedOperationException ("Unknown level " + n);
 	    }
     }
 
-    private List<Expression> getParameters ()
-	throws ParseError, IOException
+    // Pushes a malformed number back before failing, like any other bad
+    // token, so the error is reported where the number starts
+    private double number (final Token current)
+	throws ParseError
     {
-	List<Expression> parameters = new ArrayList<> ();
-	Token current = in.read ();
-
-	if (!current.getToken ().equals ("("))
+	try
+	    {
+		return in.getNumber (current);
+	    }
+	catch (final NumberFormatException nfe)
 	    {
 		in.pushBack (current);
-		throw new ParseError ("Expected open parenthesis.");
+		throw new ParseError ("Bad number " + current.getToken (), nfe);
 	    }
+    }
 
-	do
+    // Binding strength of infix operators towards their right operand, -1
+    // if the token is not one
+    private static int precedence (final String operator)
+    {
+	switch (operator)
 	    {
-		parameters.add (getNthLevelExpression (1));
-		current = in.read ();
+	    case "=":
+		return 1;
+	    case "+":
+	    case "-":
+		return 2;
+	    case "*":
+	    case "/":
+		return 3;
+	    case "^":
+		return 5;
+	    default:
+		return -1;
 	    }
-	while (current.getToken ().equals (","));
+    }
+
+    private static boolean isRightAssociative (final String operator)
+    {
+	return operator.equals ("^");
+    }
 
-	if (!current.getToken ().equals (")"))
+    // Unary minus binds tighter than * and looser than ^, so -x^2 is -(x^2)
+    private static final int PREFIX_PRECEDENCE = 4;
+    // As in the original recursive grammar, = takes only the operand just
+    // before it as its left side, so 2*a = b+1 is 2*(a = (b+1)), while its
+    // right side runs to the closer like any other expression
+    private static final int ASSIGNMENT_BOUND = 6;
+
+    private static void reduce (final Pending pending, final List<Expression> operands)
+    {
+	final int last = operands.size () - 1;
+	if (pending.kind == Pending.PREFIX)
+	    operands.set (last, new Expression (pending.operator, operands.get (last)));
+	else
 	    {
-		in.pushBack (current);
-		throw new ParseError ("Expected close parenthesis.");
+		final Expression right = operands.remove (last);
+		operands.set (last - 1, new Expression (pending.operator, operands.get (last - 1), right));
 	    }
+    }
+
+    // An operator, parenthesis or function call waiting for its operands
+    private static final class Pending
+    {
+	static final int INFIX = 0;
+	static final int PREFIX = 1;
+	static final int GROUP = 2;
+	static final int CALL = 3;
+
+	final int kind;
+	final String operator;
+	final int base;
+
+	Pending (final int kind, final String operator, final int base)
+	{
+	    this.kind = kind;
+	    this.operator = operator;
+	    this.base = base;
+	}
 
-	return parameters;
+	// Whether this must be reduced before an operator of the given
+	// precedence is pushed; parentheses and calls wait for their closer
+	boolean binds (final int precedence)
+	{
+	    switch (kind)
+		{
+		case INFIX:
+		    return precedence (operator) >= precedence;
+		case PREFIX:
+		    return PREFIX_PRECEDENCE >= precedence;
+		default:
+		    return false;
+		}
+	}
     }
 }
-		    
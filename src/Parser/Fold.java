@@ -0,0 +1,90 @@
+package Parser;
+
+import java.util.List;
+import java.util.ArrayList;
+import java.util.Map;
+import java.util.IdentityHashMap;
+import java.util.Deque;
+import java.util.ArrayDeque;
+
+// A bottom-up pass over an Expression: every node's value is computed from
+// the values of its operands. The walk keeps its own stack, so however
+// deep the expression is it never shows up as Java stack depth. Values are
+// remembered by node identity for the life of the Fold, so a sub-tree
+// shared by several parents, or by several roots, is folded once.
+public abstract class Fold<T, X extends Exception>
+{
+    private final Map<Expression, T> values;
+
+    protected Fold ()
+    {
+	values = new IdentityHashMap<> ();
+    }
+
+    // The value of a number or a name
+    protected abstract T leaf (Expression exp)
+	throws X;
+
+    // The value of an operator, given the values of children (exp)
+    protected abstract T node (Expression exp, List<T> operands)
+	throws X;
+
+    // The sub-trees whose values node () is given; the operands unless
+    // overridden
+    protected List<Expression> children (final Expression exp)
+    {
+	return exp.getOperands ();
+    }
+
+    public final T apply (final Expression root)
+	throws X
+    {
+	if (values.containsKey (root))
+	    return values.get (root);
+
+	final Deque<Pending> stack = new ArrayDeque<> ();
+	visit (root, stack);
+	while (!stack.isEmpty ())
+	    {
+		final Pending top = stack.peek ();
+		if (top.next < top.children.size ())
+		    {
+			final Expression child = top.children.get (top.next++);
+			if (!values.containsKey (child))
+			    visit (child, stack);
+			continue;
+		    }
+
+		stack.pop ();
+		final List<T> operands = new ArrayList<> (top.children.size ());
+		for (final Expression child: top.children)
+		    operands.add (values.get (child));
+		values.put (top.exp, node (top.exp, operands));
+	    }
+
+	return values.get (root);
+    }
+
+    private void visit (final Expression exp, final Deque<Pending> stack)
+	throws X
+    {
+	if (exp.getType () == Expression.Type.OPERATOR)
+	    stack.push (new Pending (exp, children (exp)));
+	else
+	    values.put (exp, leaf (exp));
+    }
+
+    private static final class Pending
+    {
+	final Expression exp;
+	final List<Expression> children;
+	int next;
+
+	Pending (final Expression exp, final List<Expression> children)
+	{
+	    this.exp = exp;
+	    this.children = children;
+	    next = 0;
+	}
+    }
+}
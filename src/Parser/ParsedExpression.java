@@ -0,0 +1,70 @@
+package Parser;
+
+// One ';'-terminated expression from a file read by BulkParser: either the
+// parsed expression or the error, with byte offsets into the file
+final public class ParsedExpression
+{
+    private final long start;
+    private final long end;
+    private final Expression expression;
+    private final ParseError error;
+    private final long errorOffset;
+
+    ParsedExpression (final long start, final long end, final Expression expression)
+    {
+	this.start = start;
+	this.end = end;
+	this.expression = expression;
+	this.error = null;
+	this.errorOffset = -1;
+    }
+
+    ParsedExpression (final long start, final long end, final ParseError error, final long errorOffset)
+    {
+	this.start = start;
+	this.end = end;
+	this.expression = null;
+	this.error = error;
+	this.errorOffset = errorOffset;
+    }
+
+    // Offset of the first character of the expression
+    public long getStart ()
+    {
+	return start;
+    }
+
+    // Offset just past the terminator
+    public long getEnd ()
+    {
+	return end;
+    }
+
+    public boolean isValid ()
+    {
+	return error == null;
+    }
+
+    public Expression getExpression ()
+    {
+	return expression;
+    }
+
+    public ParseError getError ()
+    {
+	return error;
+    }
+
+    // Offset of the token the parser stopped at, -1 for valid expressions
+    public long getErrorOffset ()
+    {
+	return errorOffset;
+    }
+
+    public String toString ()
+    {
+	return isValid ()
+	    ? start + ": " + expression
+	    : errorOffset + ": " + error.getMessage ();
+    }
+}
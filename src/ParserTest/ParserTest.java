@@ -1,15 +1,26 @@
 package ParserTest;
 import Parser.ExpressionStream;
 import Parser.Expression;
+import Parser.BulkParser;
+import Parser.ParsedExpression;
 import Lexer.TokenStream;
 import Parser.ParseError;
 import java.io.IOException;
+import java.nio.file.Paths;
 
 public class ParserTest
 {
     public static void main (final String args[])
 	throws ParseError, IOException
     {
+	// Given a file, parse all of it at once and print offsets
+	if (args.length > 0)
+	    {
+		for (final ParsedExpression exp: new BulkParser ().parse (Paths.get (args[0])))
+		    System.out.println (exp);
+		return;
+	    }
+
 	TokenStream tok = new TokenStream (System.in);
 	ExpressionStream in = new ExpressionStream (tok);
 	for (;;)